@@ -0,0 +1,34 @@
+package bill.bench;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmark suite with the GC profiler attached, so every result carries
+ * the allocation rate (gc.alloc.rate.norm = bytes per operation) next to the
+ * throughput and sample-time percentiles.
+ *
+ * Any standard JMH command-line option is accepted, e.g.
+ *   java -cp ... bill.bench.BenchmarkMain Totals -p lines=1000
+ * Results are also written to jmh-result.json for regression comparison.
+ */
+public final class BenchmarkMain {
+
+    private BenchmarkMain() {}
+
+    public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+        Options opts = new OptionsBuilder()
+            .parent(new CommandLineOptions(args))
+            .addProfiler(GCProfiler.class)
+            .resultFormat(ResultFormatType.JSON)
+            .result("jmh-result.json")
+            .build();
+        new Runner(opts).run();
+    }
+}
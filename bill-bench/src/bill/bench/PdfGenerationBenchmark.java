@@ -0,0 +1,59 @@
+package bill.bench;
+
+import bill.BookingSession;
+import bill.PDFGeneratorService;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of PDFGeneratorService.generatePDF with sequential and common-pool parallel
+ * page rendering: end-to-end to a file, and to a discarding stream to isolate rendering.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PdfGenerationBenchmark {
+
+    @Param({"1", "50", "1000", "10000"})
+    public int lines;
+
+    @Param({"false", "true"})
+    public boolean parallel;
+
+    private PDFGeneratorService generator;
+    private BookingSession      session;
+    private File                out;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        generator = parallel ? new PDFGeneratorService(ForkJoinPool.commonPool())
+                             : new PDFGeneratorService();
+        session = SessionFixtures.session(lines);
+        out     = File.createTempFile("bench-invoice-", ".pdf");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        out.delete();
+    }
+
+    @Benchmark
+    public long generatePdf() throws IOException {
+        generator.generatePDF(session, out);
+        return out.length();
+    }
+
+    @Benchmark
+    public void generatePdfToStream() throws IOException {
+        generator.generatePDF(session, OutputStream.nullOutputStream());
+    }
+}
@@ -0,0 +1,52 @@
+package bill.bench;
+
+import bill.BookingSession;
+
+import java.math.BigDecimal;
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+
+/**
+ * Builds synthetic, deterministic BookingSession objects for the benchmarks.
+ * A session of N lines holds ceil(N/2) flights and floor(N/2) car rentals,
+ * so a single line is always a flight.
+ */
+public final class SessionFixtures {
+
+    private static final String[] CITIES = {
+        "Delhi", "Mumbai", "Kolkata", "Chennai", "Bengaluru",
+        "Hyderabad", "Ahmedabad", "Pune", "Jaipur", "Lucknow"
+    };
+
+    private SessionFixtures() {}
+
+    public static BookingSession session(int lines) {
+        BookingSession s = new BookingSession();
+        s.setCompanyDetails("Ridhi Sidhi Tours", "Your Journey, Our Responsibility",
+                            "info@ridhisidhitours.com", "+91-9800000000");
+        s.setCustomerDetails("Acme Corporate Travel Desk", "+91-9000000001",
+                             "12 MG Road, Bengaluru 560001", "INV-BENCH-" + lines,
+                             new GregorianCalendar(2024, Calendar.MARCH, 31).getTime());
+
+        int flights = (lines + 1) / 2;
+        int cars    = lines / 2;
+        for (int i = 0; i < flights; i++) {
+            s.addFlight(String.format("PNR%06d", i), city(i), city(i + 1),
+                        fare(4_500, i), 1 + i % 4);
+        }
+        for (int i = 0; i < cars; i++) {
+            s.addCar(String.format("MH-12-AB-%04d", i), city(i + 3), city(i + 5),
+                     fare(1_200, i));
+        }
+        return s;
+    }
+
+    private static String city(int i) {
+        return CITIES[i % CITIES.length];
+    }
+
+    /** Fares with paise so the BigDecimal arithmetic is not trivially integral. */
+    private static BigDecimal fare(int base, int i) {
+        return BigDecimal.valueOf(base * 100L + (i * 37L) % 100_000, 2);
+    }
+}
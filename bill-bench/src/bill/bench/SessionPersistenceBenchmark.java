@@ -0,0 +1,53 @@
+package bill.bench;
+
+import bill.BookingSession;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Round-trip cost of BookingSession.saveTo / loadFrom for the .rss session format.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SessionPersistenceBenchmark {
+
+    @Param({"1", "50", "1000", "10000"})
+    public int lines;
+
+    private BookingSession session;
+    private File           saveTarget;
+    private File           saved;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        session    = SessionFixtures.session(lines);
+        saveTarget = File.createTempFile("bench-save-", ".rss");
+        saved      = File.createTempFile("bench-load-", ".rss");
+        session.saveTo(saved);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        saveTarget.delete();
+        saved.delete();
+    }
+
+    @Benchmark
+    public long saveTo() throws IOException {
+        session.saveTo(saveTarget);
+        return saveTarget.length();
+    }
+
+    @Benchmark
+    public BookingSession loadFrom() throws IOException, ClassNotFoundException {
+        return BookingSession.loadFrom(saved);
+    }
+}
@@ -0,0 +1,45 @@
+package bill.bench;
+
+import bill.BookingSession;
+import bill.Money;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of the totals chain used by the preview, the PDF totals block and the history table.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TotalsBenchmark {
+
+    @Param({"1", "50", "1000", "10000"})
+    public int lines;
+
+    private BookingSession session;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        session = SessionFixtures.session(lines);
+    }
+
+    @Benchmark
+    public Money subtotal() {
+        return session.getSubtotal();
+    }
+
+    @Benchmark
+    public Money gstAmount() {
+        return session.getGstAmount();
+    }
+
+    @Benchmark
+    public Money totalAmount() {
+        return session.getTotalAmount();
+    }
+}
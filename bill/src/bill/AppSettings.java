@@ -19,15 +19,20 @@ public class AppSettings {
     private String companyPhone   = "+91-9800000000";
     private BigDecimal gstRate    = new BigDecimal("18");
 
-    private AppSettings() { load(); }
+    private AppSettings(File file) { read(file); }
 
-    public static AppSettings getInstance() {
-        if (instance == null) instance = new AppSettings();
+    /** The desktop application's settings, from ~/.ridhisidhi.properties. */
+    public static synchronized AppSettings getInstance() {
+        if (instance == null) instance = new AppSettings(new File(SETTINGS_FILE));
         return instance;
     }
 
-    private void load() {
-        File f = new File(SETTINGS_FILE);
+    /** Settings read from file, or the defaults if it is missing; separate from getInstance(). */
+    public static AppSettings load(File file) {
+        return new AppSettings(file);
+    }
+
+    private void read(File f) {
         if (!f.exists()) return;
         try (FileInputStream fis = new FileInputStream(f)) {
             Properties p = new Properties();
@@ -2,10 +2,12 @@ package bill;
 
 import javax.swing.*;
 import javax.swing.border.*;
+import javax.swing.filechooser.FileNameExtensionFilter;
 import javax.swing.table.DefaultTableCellRenderer;
 import javax.swing.table.JTableHeader;
 import java.awt.*;
 import java.awt.geom.RoundRectangle2D;
+import java.io.File;
 
 /**
  * Abstract base for all screen panels.
@@ -216,6 +218,32 @@ public abstract class BasePanel extends JPanel {
         header.setReorderingAllowed(false);
     }
 
+    // -------------------------------------------------------------------------
+    // CSV Import
+    // -------------------------------------------------------------------------
+
+    /** Asks for a spreadsheet export to import; null if cancelled. */
+    protected File chooseCsvFile() {
+        JFileChooser fc = new JFileChooser();
+        fc.setDialogTitle("Import from CSV");
+        fc.setFileFilter(new FileNameExtensionFilter("CSV files (*.csv, *.txt)", "csv", "txt"));
+        return fc.showOpenDialog(this) == JFileChooser.APPROVE_OPTION ? fc.getSelectedFile() : null;
+    }
+
+    /** Summarises a CsvImporter run, listing the first few skipped rows. */
+    protected void showImportReport(CsvImporter.Report r, String what) {
+        String msg = "Imported " + r.imported + " " + what + ".";
+        if (r.skipped == 0) {
+            showSuccess(msg);
+            return;
+        }
+        StringBuilder sb = new StringBuilder(msg).append("\n").append(r.skipped).append(" row(s) skipped:\n");
+        int shown = Math.min(10, r.errors.size());
+        for (int i = 0; i < shown; i++) sb.append("\n").append(r.errors.get(i));
+        if (r.skipped > shown) sb.append("\n… and ").append(r.skipped - shown).append(" more");
+        showWarning(sb.toString());
+    }
+
     // -------------------------------------------------------------------------
     // Dialog Shortcuts
     // -------------------------------------------------------------------------
@@ -226,4 +254,11 @@ public abstract class BasePanel extends JPanel {
     protected void showError(String msg)   { JOptionPane.showMessageDialog(this, msg, "Error",   JOptionPane.ERROR_MESSAGE);       }
     protected void showSuccess(String msg) { JOptionPane.showMessageDialog(this, msg, "Success", JOptionPane.INFORMATION_MESSAGE); }
     protected void showWarning(String msg) { JOptionPane.showMessageDialog(this, msg, "Warning", JOptionPane.WARNING_MESSAGE);     }
+
+    /** Like showSuccess, but non-modal: the user can keep working while it is open. */
+    protected void showNotice(String msg) {
+        JDialog d = new JOptionPane(msg, JOptionPane.INFORMATION_MESSAGE).createDialog(this, "Success");
+        d.setModal(false);
+        d.setVisible(true);
+    }
 }
@@ -0,0 +1,164 @@
+package bill;
+
+import java.io.File;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Headless month-end exporter — renders every saved session (.rss) in a folder
+ * to PDF without Swing or a display.
+ *
+ * Usage:
+ *   java -cp ... bill.BatchExporter <sessions-dir> [output-dir] [--threads N] [--no-cache]
+ *   java -jar RidhiSidhi-Tours.jar --export <sessions-dir> [output-dir] [--threads N] [--no-cache]
+ *
+ * Each session is loaded with BookingSession.loadFrom and rendered by a shared
+ * PDFGeneratorService on a fixed-size worker pool. PDFs go through PdfCache, so
+ * re-running an export over unchanged sessions skips rendering (--no-cache turns
+ * this off). The PDF takes the session's
+ * file name (session_INV-1.rss → session_INV-1.pdf), so invoices that share or
+ * lack an invoice number never overwrite each other. A line is printed per file,
+ * followed by the total throughput; the exit code is 1 if any file failed.
+ */
+public class BatchExporter {
+
+    /** Outcome of exporting a single session file. */
+    public static class Result {
+        public final File      source;
+        public final File      output;
+        public final long      millis;
+        public final Exception error;   // null on success
+
+        Result(File source, File output, long millis, Exception error) {
+            this.source = source;
+            this.output = output;
+            this.millis = millis;
+            this.error  = error;
+        }
+
+        public boolean isSuccess() { return error == null; }
+    }
+
+    private final PDFGeneratorService generator = new PDFGeneratorService();
+    private final int                 threads;
+    private final PdfCache            cache;     // null = always render
+
+    public BatchExporter(int threads) {
+        this(threads, PdfCache.shared());
+    }
+
+    /** @param cache cache of rendered PDFs, or null to render every session */
+    public BatchExporter(int threads, PdfCache cache) {
+        if (threads < 1) throw new IllegalArgumentException("At least 1 worker thread required.");
+        this.threads = threads;
+        this.cache   = cache;
+    }
+
+    /**
+     * Exports every .rss file in sessionDir into outputDir, reporting each result to
+     * log as it completes. Returns the results in completion order.
+     */
+    public List<Result> exportAll(File sessionDir, File outputDir, PrintStream log) throws InterruptedException {
+        File[] files = sessionDir.listFiles((d, name) -> name.endsWith(".rss"));
+        if (files == null) throw new IllegalArgumentException("Not a readable folder: " + sessionDir);
+        Arrays.sort(files);
+        if (!outputDir.isDirectory() && !outputDir.mkdirs())
+            throw new IllegalArgumentException("Cannot create output folder: " + outputDir);
+
+        ExecutorService pool = Executors.newFixedThreadPool(Math.min(threads, Math.max(1, files.length)), r -> {
+            Thread t = new Thread(r, "pdf-export");
+            t.setDaemon(true);
+            return t;
+        });
+        try {
+            CompletionService<Result> done = new ExecutorCompletionService<>(pool);
+            for (File f : files) done.submit(() -> exportOne(f, outputDir));
+
+            List<Result> results = new ArrayList<>(files.length);
+            for (int i = 0; i < files.length; i++) {
+                Result r = done.take().get();
+                results.add(r);
+                if (r.isSuccess())
+                    log.printf("OK    %s -> %s (%d ms)%n", r.source.getName(), r.output.getName(), r.millis);
+                else
+                    log.printf("FAIL  %s: %s%n", r.source.getName(), r.error);
+            }
+            return results;
+        } catch (ExecutionException e) {
+            // exportOne never throws; any failure is captured in its Result
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private Result exportOne(File source, File outputDir) {
+        String name   = source.getName();
+        File   output = new File(outputDir, name.substring(0, name.length() - ".rss".length()) + ".pdf");
+        long   start  = System.nanoTime();
+        try {
+            BookingSession session = BookingSession.loadFrom(source);
+            // Both paths write through a temp file, so a failure never leaves a half-written PDF
+            if (cache != null) PDFGeneratorService.writePDF(cache.getOrRender(session, generator, null), output);
+            else               generator.generatePDF(session, output);
+            return new Result(source, output, (System.nanoTime() - start) / 1_000_000, null);
+        } catch (Exception e) {
+            return new Result(source, output, (System.nanoTime() - start) / 1_000_000, e);
+        }
+    }
+
+    // -------------------------------------------------------------------------
+    // Entry Point
+    // -------------------------------------------------------------------------
+
+    public static void main(String[] args) {
+        System.setProperty("java.awt.headless", "true");
+
+        List<String> paths   = new ArrayList<>();
+        int          threads = Runtime.getRuntime().availableProcessors();
+        boolean      cached  = true;
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--threads") && i + 1 < args.length) threads = parseThreads(args[++i]);
+            else if (args[i].equals("--no-cache"))                  cached  = false;
+            else paths.add(args[i]);
+        }
+        if (threads < 1 || paths.isEmpty() || paths.size() > 2) {
+            System.err.println("Usage: BatchExporter <sessions-dir> [output-dir] [--threads N] [--no-cache]");
+            System.exit(2);
+        }
+        File sessionDir = new File(paths.get(0));
+        File outputDir  = paths.size() > 1 ? new File(paths.get(1)) : sessionDir;
+
+        try {
+            long         start   = System.nanoTime();
+            List<Result> results = new BatchExporter(threads, cached ? PdfCache.shared() : null).exportAll(sessionDir, outputDir, System.out);
+            double       secs    = (System.nanoTime() - start) / 1e9;
+            long         ok      = results.stream().filter(Result::isSuccess).count();
+
+            System.out.printf("Exported %d of %d sessions in %.2f s (%.1f invoices/s, %d threads)%n",
+                              ok, results.size(), secs, results.size() / Math.max(secs, 1e-9), threads);
+            System.exit(ok == results.size() ? 0 : 1);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.exit(2);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            System.exit(1);
+        }
+    }
+
+    private static int parseThreads(String s) {
+        try {
+            return Integer.parseInt(s);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+}
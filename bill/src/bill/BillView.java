@@ -4,7 +4,7 @@ import javax.swing.*;
 import javax.swing.border.*;
 import java.awt.*;
 import java.io.File;
-import java.text.SimpleDateFormat;
+import java.util.concurrent.ExecutionException;
 
 /**
  * Step 4 — Invoice preview and PDF export.
@@ -14,15 +14,27 @@ import java.text.SimpleDateFormat;
  *  - GST line item in both text preview and grand total
  *  - Fixed-width column formatting to handle long names without breaking alignment
  *  - Sidebar shows subtotal, GST, and grand total separately
+ *  - Preview is updated section by section (see InvoicePreview) and skipped
+ *    entirely when the session has not changed since it was last shown
+ *  - PDF export runs in the background with progress and a Cancel button
+ *  - The PDF is pre-rendered as soon as the preview is shown, so saving an
+ *    unchanged invoice only has to write the bytes
  */
 public class BillView extends BasePanel {
 
     private JTextArea previewArea;
+    private final InvoicePreview preview;
     private JLabel    lblSubtotal, lblGst, lblTotal;
+    private JButton   btnPDF, btnCancelExport;
+    private JProgressBar exportProgress;
+    private PdfExport    export;
+    private PdfPrerender prerender;  // bytes for the current session version, if started
 
     public BillView(MainApp controller, BookingSession session) {
         super(controller, session);
         setName(MainApp.BILL_PANEL);
+        preview = new InvoicePreview(session);
+        session.addSessionListener(e -> discardPrerender());
         initUI();
     }
 
@@ -79,11 +91,26 @@ public class BillView extends BasePanel {
         sidebar.add(Box.createVerticalStrut(30));
 
         // Action buttons
-        JButton btnPDF = createStyledButton("⬇  Save as PDF", PRIMARY_COLOR, true);
+        btnPDF = createStyledButton("⬇  Save as PDF", PRIMARY_COLOR, true);
         btnPDF.setAlignmentX(Component.CENTER_ALIGNMENT);
         btnPDF.addActionListener(e -> savePDF());
         sidebar.add(btnPDF);
 
+        // Export progress, shown only while a PDF is being written
+        exportProgress = new JProgressBar(0, 100);
+        exportProgress.setStringPainted(true);
+        exportProgress.setMaximumSize(new Dimension(Integer.MAX_VALUE, 22));
+        exportProgress.setAlignmentX(Component.CENTER_ALIGNMENT);
+        exportProgress.setVisible(false);
+        sidebar.add(Box.createVerticalStrut(6));
+        sidebar.add(exportProgress);
+
+        btnCancelExport = createStyledButton("Cancel Export", DANGER_COLOR, false);
+        btnCancelExport.setAlignmentX(Component.CENTER_ALIGNMENT);
+        btnCancelExport.addActionListener(e -> { if (export != null) export.cancel(true); });
+        btnCancelExport.setVisible(false);
+        sidebar.add(btnCancelExport);
+
         sidebar.add(Box.createVerticalStrut(10));
 
         JButton btnNew = createStyledButton("New Booking", WARNING_COLOR, false);
@@ -112,88 +139,30 @@ public class BillView extends BasePanel {
 
     /** Called by MainApp every time this panel becomes visible. */
     public void refresh() {
-        previewArea.setText(buildInvoiceText());
-        previewArea.setCaretPosition(0);
+        if (preview.applyTo(previewArea.getDocument())) {
+            previewArea.setCaretPosition(0);
+
+            lblSubtotal.setText(CURRENCY + " " + session.getSubtotal().toPlainString());
+            lblGst.setText(CURRENCY + " " + session.getGstAmount().toPlainString()
+                           + "  (" + session.getGstRatePercent().toPlainString() + "%)");
+            lblTotal.setText(CURRENCY + " " + session.getTotalAmount().toPlainString());
+        }
 
-        lblSubtotal.setText(CURRENCY + " " + session.getSubtotal().toPlainString());
-        lblGst.setText(CURRENCY + " " + session.getGstAmount().toPlainString()
-                       + "  (" + session.getGstRatePercent().toPlainString() + "%)");
-        lblTotal.setText(CURRENCY + " " + session.getTotalAmount().toPlainString());
+        // "Save as PDF" is almost always next, so start rendering now, unless
+        // the session could not be exported yet and the work would be wasted
+        if (prerender == null && export == null && canExport()) prerender = PdfPrerender.start(session);
     }
 
-    private String buildInvoiceText() {
-        SimpleDateFormat sdf = new SimpleDateFormat("dd-MM-yyyy");
-        String line70  = "-".repeat(70) + "\n";
-        String line70b = "=".repeat(70) + "\n";
-
-        StringBuilder sb = new StringBuilder();
-
-        // Header
-        sb.append(centred(session.getCompanyName(), 70)).append("\n");
-        sb.append(centred(session.getCompanyTagline(), 70)).append("\n");
-        sb.append(centred(session.getCompanyPhone() + "  |  " + session.getCompanyEmail(), 70)).append("\n");
-        sb.append(line70b);
-
-        // Invoice meta
-        sb.append(String.format(" Invoice No : %-30s Date : %s\n",
-            session.getInvoiceNumber(), sdf.format(session.getBookingDate())));
-        sb.append(String.format(" Client     : %-30s\n", truncate(session.getCustomerName(), 30)));
-        if (!session.getContactNumber().isEmpty())
-            sb.append(String.format(" Contact    : %s\n", session.getContactNumber()));
-        if (!session.getAddress().isEmpty())
-            sb.append(String.format(" Address    : %s\n", session.getAddress()));
-        sb.append(line70);
-
-        // Column header
-        sb.append(String.format(" %-12s  %-25s  %6s  %12s\n", "REF", "ROUTE", "PAX", "AMOUNT"));
-        sb.append(line70);
-
-        // Flights
-        if (!session.getFlights().isEmpty()) {
-            sb.append(" FLIGHT BOOKINGS\n");
-            for (BookingSession.FlightBookingData f : session.getFlights()) {
-                String route = truncate(f.source + " \u2192 " + f.dest, 25);
-                sb.append(String.format(" %-12s  %-25s  %6d  %12s\n",
-                    truncate(f.pnr, 12), route, f.passengers,
-                    CURRENCY + " " + f.fare.toPlainString()));
-            }
-            sb.append(String.format(" %47s  %12s\n", "Flight subtotal :",
-                CURRENCY + " " + session.getFlightTotal().toPlainString()));
-            sb.append("\n");
-        }
+    /** An invoice needs a customer name, an invoice number and at least one booking. */
+    private boolean canExport() {
+        return session.isValidCustomer() && session.hasBookings();
+    }
 
-        // Cars
-        if (!session.getCars().isEmpty()) {
-            sb.append(" CAR RENTALS\n");
-            for (BookingSession.CarBookingData c : session.getCars()) {
-                String route = truncate(c.source + " \u2192 " + c.dest, 25);
-                sb.append(String.format(" %-12s  %-25s  %6s  %12s\n",
-                    truncate(c.carNo, 12), route, "",
-                    CURRENCY + " " + c.fare.toPlainString()));
-            }
-            sb.append(String.format(" %47s  %12s\n", "Car subtotal :",
-                CURRENCY + " " + session.getCarTotal().toPlainString()));
-            sb.append("\n");
+    private void discardPrerender() {
+        if (prerender != null) {
+            prerender.cancel();
+            prerender = null;
         }
-
-        // Totals
-        sb.append(line70);
-        sb.append(String.format(" %47s  %12s\n", "Subtotal :",
-            CURRENCY + " " + session.getSubtotal().toPlainString()));
-        sb.append(String.format(" %47s  %12s\n",
-            "GST @ " + session.getGstRatePercent().toPlainString() + "% :",
-            CURRENCY + " " + session.getGstAmount().toPlainString()));
-        sb.append(line70b);
-        sb.append(String.format(" %47s  %12s\n", "GRAND TOTAL :",
-            CURRENCY + " " + session.getTotalAmount().toPlainString()));
-        sb.append(line70b);
-
-        // Footer
-        sb.append("\n Payment Terms: Please remit within 15 days of invoice date.\n");
-        sb.append(" Thank you for choosing ").append(session.getCompanyName()).append("!\n");
-        sb.append("\n").append(centred("* This is a computer-generated invoice *", 70)).append("\n");
-
-        return sb.toString();
     }
 
     // -------------------------------------------------------------------------
@@ -201,16 +170,82 @@ public class BillView extends BasePanel {
     // -------------------------------------------------------------------------
 
     private void savePDF() {
+        if (export != null) return; // one export at a time
+        if (!canExport()) {
+            showWarning("Please enter the customer name and invoice number and add at least one booking before saving the PDF.");
+            return;
+        }
         JFileChooser fc = new JFileChooser();
         fc.setDialogTitle("Save Invoice as PDF");
         fc.setSelectedFile(new File("Invoice_" + session.getInvoiceNumber() + ".pdf"));
-        if (fc.showSaveDialog(this) == JFileChooser.APPROVE_OPTION) {
+        if (fc.showSaveDialog(this) != JFileChooser.APPROVE_OPTION) return;
+
+        // Render from a copy so edits made while exporting cannot change the document.
+        // A pre-render taken at the current version is used instead, if there is one.
+        PdfPrerender ready = prerender != null && prerender.version == session.getVersion() ? prerender : null;
+        export = new PdfExport(session.readOnlyCopy(), fc.getSelectedFile(), ready);
+        export.addPropertyChangeListener(e -> {
+            if ("progress".equals(e.getPropertyName())) exportProgress.setValue((Integer) e.getNewValue());
+        });
+        exportProgress.setValue(0);
+        exportProgress.setString("Rendering…");
+        exportProgress.setVisible(true);
+        btnCancelExport.setVisible(true);
+        btnPDF.setEnabled(false);
+        revalidate();
+        export.execute();
+    }
+
+    /**
+     * Renders and writes the PDF off the EDT. Progress is reported per page;
+     * cancel(true) interrupts the render, and PDFGeneratorService leaves the target
+     * file untouched unless the export completes.
+     */
+    private final class PdfExport extends SwingWorker<Void, Void> {
+        private final BookingSession snapshot;
+        private final File           file;
+        private final PdfPrerender   ready;  // may be null
+
+        PdfExport(BookingSession snapshot, File file, PdfPrerender ready) {
+            this.snapshot = snapshot;
+            this.file     = file;
+            this.ready    = ready;
+        }
+
+        @Override
+        protected Void doInBackground() throws Exception {
+            PDFGeneratorService.ProgressListener progress = (done, total) -> {
+                setProgress(done * 100 / total);
+                SwingUtilities.invokeLater(() -> {
+                    if (export == this) exportProgress.setString("Page " + done + " of " + total);
+                });
+            };
+            byte[] pdf = ready != null ? ready.await(progress) : null;
+            if (pdf != null) PDFGeneratorService.writePDF(pdf, file);
+            else             PDFGeneratorService.writePDF(
+                                 PdfCache.shared().getOrRender(snapshot, new PDFGeneratorService(), progress), file);
+            return null;
+        }
+
+        @Override
+        protected void done() {
+            export = null;
+            exportProgress.setVisible(false);
+            btnCancelExport.setVisible(false);
+            btnPDF.setEnabled(true);
+            revalidate();
+
+            if (isCancelled()) return;
             try {
-                new PDFGeneratorService().generatePDF(session, fc.getSelectedFile());
-                showSuccess("PDF saved successfully to:\n" + fc.getSelectedFile().getAbsolutePath());
-            } catch (Exception e) {
-                showError("PDF generation failed:\n" + e.getMessage());
+                get();
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause() != null ? e.getCause() : e;
+                showError("PDF generation failed:\n" + cause.getMessage());
+                return;
+            } catch (InterruptedException e) {
+                return;
             }
+            showNotice("PDF saved successfully to:\n" + file.getAbsolutePath());
         }
     }
 
@@ -218,17 +253,6 @@ public class BillView extends BasePanel {
     // Helpers
     // -------------------------------------------------------------------------
 
-    private String centred(String text, int width) {
-        if (text.length() >= width) return text;
-        int pad = (width - text.length()) / 2;
-        return " ".repeat(pad) + text;
-    }
-
-    private String truncate(String text, int max) {
-        if (text == null) return "";
-        return text.length() <= max ? text : text.substring(0, max - 1) + "…";
-    }
-
     private JLabel sidebarLabel(String text, Color color) {
         JLabel l = new JLabel(text);
         l.setFont(LABEL_FONT);
@@ -0,0 +1,87 @@
+package bill;
+
+/**
+ * The validation rules for flight and car lines, each with the message that
+ * addFlight / addCar put in their IllegalArgumentException.
+ *
+ * {@link #checkFlight} and {@link #checkCar} report the first rule a line breaks
+ * without throwing or allocating, so whole batches can be checked cheaply; see
+ * {@link BookingSession#validateFlights} and {@link ValidationReport}.
+ */
+public enum BookingRule {
+    PNR_EMPTY         ("PNR cannot be empty."),
+    SOURCE_EMPTY      ("Source cannot be empty."),
+    DESTINATION_EMPTY ("Destination cannot be empty."),
+    SAME_ROUTE        ("Source and destination cannot be the same."),
+    CAR_NO_EMPTY      ("Car number cannot be empty."),
+    PICKUP_EMPTY      ("Pickup location cannot be empty."),
+    DROP_EMPTY        ("Drop location cannot be empty."),
+    SAME_PICKUP_DROP  ("Pickup and drop cannot be the same."),
+    FARE_NOT_POSITIVE ("Fare must be greater than zero."),
+    NO_PASSENGERS     ("At least 1 passenger required."),
+    FARE_TOO_FINE     ("Fare is too large or has too many decimal places.");
+
+    /**
+     * Most decimal places a fare may have. Totals are exact longs at the largest
+     * fare scale, so this is what keeps them in range: at 4 places they reach
+     * about 9 × 10^14 rupees.
+     */
+    public static final int MAX_FARE_SCALE = 4;
+
+    private static final BookingRule[] VALUES = values();
+
+    public final String message;
+
+    BookingRule(String message) {
+        this.message = message;
+    }
+
+    static BookingRule of(int ordinal) {
+        return VALUES[ordinal];
+    }
+
+    /** The first rule the flight line breaks, or null if it is valid. Null fields count as empty. */
+    public static BookingRule checkFlight(String pnr, String src, String dest, Money fare, int passengers) {
+        if (isBlank(pnr))                  return PNR_EMPTY;
+        if (isBlank(src))                  return SOURCE_EMPTY;
+        if (isBlank(dest))                 return DESTINATION_EMPTY;
+        if (sameIgnoringCase(src, dest))   return SAME_ROUTE;
+        if (fare == null || !fare.isPositive()) return FARE_NOT_POSITIVE;
+        if (fare.scale() > MAX_FARE_SCALE) return FARE_TOO_FINE;
+        if (passengers < 1)                return NO_PASSENGERS;
+        return null;
+    }
+
+    /** The first rule the car line breaks, or null if it is valid. Null fields count as empty. */
+    public static BookingRule checkCar(String carNo, String src, String dest, Money fare) {
+        if (isBlank(carNo))                return CAR_NO_EMPTY;
+        if (isBlank(src))                  return PICKUP_EMPTY;
+        if (isBlank(dest))                 return DROP_EMPTY;
+        if (sameIgnoringCase(src, dest))   return SAME_PICKUP_DROP;
+        if (fare == null || !fare.isPositive()) return FARE_NOT_POSITIVE;
+        if (fare.scale() > MAX_FARE_SCALE) return FARE_TOO_FINE;
+        return null;
+    }
+
+    private static boolean isBlank(String s) {
+        return s == null || s.isBlank();
+    }
+
+    /** a.trim().equalsIgnoreCase(b.trim()) without creating the trimmed strings. */
+    private static boolean sameIgnoringCase(String a, String b) {
+        int as = start(a), ae = end(a), bs = start(b), be = end(b);
+        return ae - as == be - bs && a.regionMatches(true, as, b, bs, ae - as);
+    }
+
+    private static int start(String s) {
+        int i = 0;
+        while (i < s.length() && s.charAt(i) <= ' ') i++;
+        return i;
+    }
+
+    private static int end(String s) {
+        int i = s.length();
+        while (i > 0 && s.charAt(i - 1) <= ' ') i--;
+        return i;
+    }
+}
@@ -4,8 +4,14 @@ import java.io.*;
 import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
 
 /**
  * Central data model for a single booking session.
@@ -31,39 +37,179 @@ public class BookingSession implements Serializable {
     // Tax
     private BigDecimal gstRatePercent = new BigDecimal("18"); // 18% GST by default
 
-    private final List<FlightBookingData> flights = new ArrayList<>();
-    private final List<CarBookingData>    cars    = new ArrayList<>();
+    // ChunkedLists, so copy() can share them (see there). Declared as List because
+    // legacy serialized sessions hold them as ArrayLists; readObject converts.
+    private List<FlightBookingData> flights = new ChunkedList<>();
+    private List<CarBookingData>    cars    = new ChunkedList<>();
+
+    // Running aggregates, kept in step with the lists by every mutator.
+    // Transient: rebuilt by recomputeTotals() after deserialization.
+    private transient Money flightTotal = Money.ZERO;
+    private transient Money carTotal    = Money.ZERO;
+    private transient int   passengerTotal;
+    private transient Money subtotal    = Money.ZERO;
+    private transient Money gstAmount   = Money.ofPaise(0);
+    private transient Money totalAmount = Money.ofPaise(0);
+
+    // How many fares of each scale each list holds. A total keeps the scale a fresh
+    // BigDecimal sum would have (the largest fare scale), so when the last fare of
+    // that scale goes the total drops back, without rescanning the list.
+    private transient int[] flightScales = new int[Money.MAX_SCALE + 1];
+    private transient int[] carScales    = new int[Money.MAX_SCALE + 1];
+
+    // Stable line IDs: every line gets the next ID when it joins the session, and
+    // each index maps an ID to the line's current position. Transient: a loaded
+    // session numbers its lines afresh, so IDs only mean something within one run.
+    // The indexes are built on first lookup (null until then), which keeps copy()
+    // cheap; volatile because a read-only snapshot may build them on any thread.
+    private transient long                        nextId;
+    private transient volatile Map<Long, Integer> flightIndex;
+    private transient volatile Map<Long, Integer> carIndex;
+
+    // Set on the snapshots published by SharedSession; every mutator then throws.
+    private transient boolean readOnly;
+
+    // Read-only views handed out by getFlights() / getCars(), created on first use
+    private transient List<FlightBookingData> flightsView;
+    private transient List<CarBookingData>    carsView;
+
+    // Change notification. Transient: listeners belong to the live UI, not the saved data.
+    private transient List<SessionListener> listeners;
+    private transient long                  version;
+
+    private static final BigDecimal HUNDRED = new BigDecimal("100");
+
+    private static final String TOTAL_TOO_LARGE = "Invoice total would be too large.";
+
+    // Debug/test aid: cross-check the running totals on every read (-Dbill.checkTotals=true)
+    private static volatile boolean checkTotals = Boolean.getBoolean("bill.checkTotals");
 
     // -------------------------------------------------------------------------
     // Inner Data Classes
     // -------------------------------------------------------------------------
 
-    public static class FlightBookingData implements Serializable {
+    /**
+     * One flight line. Immutable, so sessions can hand out their records without copying.
+     * The serialized form still stores fare as a BigDecimal, so sessions saved before
+     * Money was introduced keep loading.
+     *
+     * id is assigned by the session the line belongs to and stays with the line
+     * through edits and moves; 0 means the record is not (yet) in a session.
+     * It is not saved.
+     */
+    public static final class FlightBookingData implements Serializable {
         private static final long serialVersionUID = 1L;
-        public String     pnr, source, dest;
-        public BigDecimal fare;
-        public int        passengers;
+        private static final ObjectStreamField[] serialPersistentFields = {
+            new ObjectStreamField("pnr",        String.class),
+            new ObjectStreamField("source",     String.class),
+            new ObjectStreamField("dest",       String.class),
+            new ObjectStreamField("fare",       BigDecimal.class),
+            new ObjectStreamField("passengers", int.class)
+        };
+
+        public final long   id;
+        public final String pnr, source, dest;
+        public final Money  fare;
+        public final int    passengers;
+
+        private transient Object[] serialized; // only set between readObject and readResolve
+
+        public FlightBookingData(String pnr, String src, String dest, Money fare, int passengers) {
+            this(0, pnr, src, dest, fare, passengers);
+        }
 
-        public FlightBookingData(String pnr, String src, String dest, BigDecimal fare, int passengers) {
+        FlightBookingData(long id, String pnr, String src, String dest, Money fare, int passengers) {
+            this.id         = id;
             this.pnr        = pnr;
             this.source     = src;
             this.dest       = dest;
             this.fare       = fare;
             this.passengers = passengers;
         }
+
+        private void writeObject(ObjectOutputStream out) throws IOException {
+            ObjectOutputStream.PutField f = out.putFields();
+            f.put("pnr",        pnr);
+            f.put("source",     source);
+            f.put("dest",       dest);
+            f.put("fare",       fare.toBigDecimal());
+            f.put("passengers", passengers);
+            out.writeFields();
+        }
+
+        private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+            ObjectInputStream.GetField f = in.readFields();
+            serialized = new Object[]{ f.get("pnr", null), f.get("source", null), f.get("dest", null),
+                                       f.get("fare", null), f.get("passengers", 0) };
+        }
+
+        private Object readResolve() throws ObjectStreamException {
+            if (!(serialized[3] instanceof BigDecimal)) throw new InvalidObjectException("Flight has no fare");
+            return new FlightBookingData((String) serialized[0], (String) serialized[1], (String) serialized[2],
+                                         legacyFare((BigDecimal) serialized[3]), (Integer) serialized[4]);
+        }
     }
 
-    public static class CarBookingData implements Serializable {
+    /**
+     * One car rental line. Immutable, with the same BigDecimal serialized form and
+     * session-assigned id as FlightBookingData.
+     */
+    public static final class CarBookingData implements Serializable {
         private static final long serialVersionUID = 1L;
-        public String     carNo, source, dest;
-        public BigDecimal fare;
+        private static final ObjectStreamField[] serialPersistentFields = {
+            new ObjectStreamField("carNo",  String.class),
+            new ObjectStreamField("source", String.class),
+            new ObjectStreamField("dest",   String.class),
+            new ObjectStreamField("fare",   BigDecimal.class)
+        };
+
+        public final long   id;
+        public final String carNo, source, dest;
+        public final Money  fare;
+
+        private transient Object[] serialized; // only set between readObject and readResolve
+
+        public CarBookingData(String carNo, String src, String dest, Money fare) {
+            this(0, carNo, src, dest, fare);
+        }
 
-        public CarBookingData(String carNo, String src, String dest, BigDecimal fare) {
+        CarBookingData(long id, String carNo, String src, String dest, Money fare) {
+            this.id     = id;
             this.carNo  = carNo;
             this.source = src;
             this.dest   = dest;
             this.fare   = fare;
         }
+
+        private void writeObject(ObjectOutputStream out) throws IOException {
+            ObjectOutputStream.PutField f = out.putFields();
+            f.put("carNo",  carNo);
+            f.put("source", source);
+            f.put("dest",   dest);
+            f.put("fare",   fare.toBigDecimal());
+            out.writeFields();
+        }
+
+        private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+            ObjectInputStream.GetField f = in.readFields();
+            serialized = new Object[]{ f.get("carNo", null), f.get("source", null), f.get("dest", null),
+                                       f.get("fare", null) };
+        }
+
+        private Object readResolve() throws ObjectStreamException {
+            if (!(serialized[3] instanceof BigDecimal)) throw new InvalidObjectException("Car rental has no fare");
+            return new CarBookingData((String) serialized[0], (String) serialized[1], (String) serialized[2],
+                                      legacyFare((BigDecimal) serialized[3]));
+        }
+    }
+
+    /** Fares in old files keep their exact value and scale, even below a paisa. */
+    private static Money legacyFare(BigDecimal fare) throws InvalidObjectException {
+        try {
+            return Money.of(fare);
+        } catch (ArithmeticException e) {
+            throw new InvalidObjectException("Fare out of range: " + fare.toPlainString());
+        }
     }
 
     // -------------------------------------------------------------------------
@@ -71,66 +217,321 @@ public class BookingSession implements Serializable {
     // -------------------------------------------------------------------------
 
     public void setCustomerDetails(String name, String contact, String addr, String inv, Date date) {
-        this.customerName  = name.trim();
-        this.contactNumber = contact.trim();
-        this.address       = addr.trim();
-        this.invoiceNumber = inv.trim();
+        checkWritable();
+        name = name.trim(); contact = contact.trim(); addr = addr.trim(); inv = inv.trim();
+        if (name.equals(customerName) && contact.equals(contactNumber) && addr.equals(address)
+                && inv.equals(invoiceNumber) && Objects.equals(date, bookingDate)) return;
+        this.customerName  = name;
+        this.contactNumber = contact;
+        this.address       = addr;
+        this.invoiceNumber = inv;
         this.bookingDate   = date;
+        fire(SessionEvent.Type.CUSTOMER_CHANGED, -1);
     }
 
     public void setCompanyDetails(String name, String tagline, String email, String phone) {
+        checkWritable();
+        if (Objects.equals(name, companyName) && Objects.equals(tagline, companyTagline)
+                && Objects.equals(email, companyEmail) && Objects.equals(phone, companyPhone)) return;
         this.companyName    = name;
         this.companyTagline = tagline;
         this.companyEmail   = email;
         this.companyPhone   = phone;
+        fire(SessionEvent.Type.COMPANY_CHANGED, -1);
     }
 
     public void setGstRate(BigDecimal ratePercent) {
+        checkWritable();
+        if (ratePercent.equals(gstRatePercent)) return;
+        setTotals(flightTotal, carTotal, ratePercent);
         this.gstRatePercent = ratePercent;
+        fire(SessionEvent.Type.GST_RATE_CHANGED, -1);
     }
 
     /** Adds a flight after validation. Throws IllegalArgumentException on invalid input. */
     public void addFlight(String pnr, String src, String dest, BigDecimal fare, int passengers) {
-        if (pnr.isBlank())           throw new IllegalArgumentException("PNR cannot be empty.");
-        if (src.isBlank())           throw new IllegalArgumentException("Source cannot be empty.");
-        if (dest.isBlank())          throw new IllegalArgumentException("Destination cannot be empty.");
-        if (src.equalsIgnoreCase(dest)) throw new IllegalArgumentException("Source and destination cannot be the same.");
-        if (fare.compareTo(BigDecimal.ZERO) <= 0) throw new IllegalArgumentException("Fare must be greater than zero.");
-        if (passengers < 1)          throw new IllegalArgumentException("At least 1 passenger required.");
-        flights.add(new FlightBookingData(pnr.trim(), src.trim(), dest.trim(), fare, passengers));
+        addFlight(pnr, src, dest, toFare(fare), passengers);
     }
 
-    /** Updates an existing flight entry by index. */
+    /** Adds a flight after validation. Throws IllegalArgumentException on invalid input. */
+    public void addFlight(String pnr, String src, String dest, Money fare, int passengers) {
+        checkWritable();
+        validateFlight(pnr, src, dest, fare, passengers);
+        insertFlight(flights.size(), new FlightBookingData(pnr.trim(), src.trim(), dest.trim(), fare, passengers));
+    }
+
+    /**
+     * Checks every line against the addFlight rules in one pass, without throwing.
+     * The report lists each invalid line's position in the list and the first rule it broke.
+     */
+    public static ValidationReport validateFlights(List<FlightBookingData> lines) {
+        ValidationReport report = new ValidationReport(lines.size());
+        for (int i = 0; i < lines.size(); i++) {
+            FlightBookingData f = lines.get(i);
+            BookingRule broken = BookingRule.checkFlight(f.pnr, f.source, f.dest, f.fare, f.passengers);
+            if (broken != null) report.add(i, broken);
+        }
+        return report;
+    }
+
+    /**
+     * Appends the valid lines of a batch, in order, with a single FLIGHT_ADDED event
+     * covering all of them. Invalid lines are skipped, not thrown on; the returned
+     * report says which they were. Text fields are trimmed, as addFlight does.
+     */
+    public ValidationReport addFlights(List<FlightBookingData> batch) {
+        checkWritable();
+        ValidationReport report = validateFlights(batch);
+        List<FlightBookingData> valid = report.isEmpty() ? batch : new ArrayList<>(report.validCount());
+        if (valid != batch) {
+            for (int i = 0; i < batch.size(); i++) if (report.isValid(i)) valid.add(batch.get(i));
+        }
+        if (valid.isEmpty()) return report;
+
+        int[] scales = flightScales.clone();
+        Money total  = flightTotal;
+        int   pax    = 0;
+        for (FlightBookingData f : valid) {
+            total = with(scales, total, f.fare);
+            pax  += f.passengers;
+        }
+        setTotals(total, carTotal, gstRatePercent);
+        flightScales    = scales;
+        passengerTotal += pax;
+
+        int first = flights.size();
+        for (FlightBookingData f : valid) {
+            flights.add(new FlightBookingData(++nextId, f.pnr.trim(), f.source.trim(), f.dest.trim(),
+                                              f.fare, f.passengers));
+        }
+        indexFlights(first);
+        fire(SessionEvent.Type.FLIGHT_ADDED, first, valid.size());
+        return report;
+    }
+
+    private static void validateFlight(String pnr, String src, String dest, Money fare, int passengers) {
+        BookingRule broken = BookingRule.checkFlight(pnr, src, dest, fare, passengers);
+        if (broken != null) throw new IllegalArgumentException(broken.message);
+    }
+
+    /**
+     * Updates an existing flight entry by index, after validation. An index equal to
+     * the size appends. Prefer replaceFlight: an index goes stale when lines move.
+     */
     public void updateFlight(int index, String pnr, String src, String dest, BigDecimal fare, int passengers) {
-        removeFlight(index);
-        flights.add(index, new FlightBookingData(pnr.trim(), src.trim(), dest.trim(), fare, passengers));
+        if (index == flights.size()) addFlight(pnr, src, dest, fare, passengers);
+        else replaceFlight(flights.get(index).id, pnr, src, dest, fare, passengers);
+    }
+
+    /** Replaces the flight with the given ID in place, after validation. O(1). */
+    public void replaceFlight(long id, String pnr, String src, String dest, BigDecimal fare, int passengers) {
+        replaceFlight(id, pnr, src, dest, toFare(fare), passengers);
+    }
+
+    /**
+     * Replaces the flight with the given ID in place, after validation. O(1).
+     * Throws IllegalArgumentException if the input is invalid or no line has that ID.
+     */
+    public void replaceFlight(long id, String pnr, String src, String dest, Money fare, int passengers) {
+        checkWritable();
+        int index = requireFlight(id);
+        validateFlight(pnr, src, dest, fare, passengers);
+        FlightBookingData f      = new FlightBookingData(id, pnr.trim(), src.trim(), dest.trim(), fare, passengers);
+        FlightBookingData old    = flights.get(index);
+        int[]             scales = flightScales.clone();
+        setTotals(without(scales, with(scales, flightTotal, f.fare), old.fare), carTotal, gstRatePercent);
+        flightScales    = scales;
+        passengerTotal += f.passengers - old.passengers;
+        flights.set(index, f);
+        fire(SessionEvent.Type.FLIGHT_UPDATED, index);
     }
 
     /** Adds a car rental after validation. Throws IllegalArgumentException on invalid input. */
     public void addCar(String carNo, String src, String dest, BigDecimal fare) {
-        if (carNo.isBlank()) throw new IllegalArgumentException("Car number cannot be empty.");
-        if (src.isBlank())   throw new IllegalArgumentException("Pickup location cannot be empty.");
-        if (dest.isBlank())  throw new IllegalArgumentException("Drop location cannot be empty.");
-        if (src.equalsIgnoreCase(dest)) throw new IllegalArgumentException("Pickup and drop cannot be the same.");
-        if (fare.compareTo(BigDecimal.ZERO) <= 0) throw new IllegalArgumentException("Fare must be greater than zero.");
-        cars.add(new CarBookingData(carNo.trim(), src.trim(), dest.trim(), fare));
+        addCar(carNo, src, dest, toFare(fare));
     }
 
-    /** Updates an existing car entry by index. */
+    /** Adds a car rental after validation. Throws IllegalArgumentException on invalid input. */
+    public void addCar(String carNo, String src, String dest, Money fare) {
+        checkWritable();
+        validateCar(carNo, src, dest, fare);
+        insertCar(cars.size(), new CarBookingData(carNo.trim(), src.trim(), dest.trim(), fare));
+    }
+
+    /** Checks every line against the addCar rules in one pass; see validateFlights. */
+    public static ValidationReport validateCars(List<CarBookingData> lines) {
+        ValidationReport report = new ValidationReport(lines.size());
+        for (int i = 0; i < lines.size(); i++) {
+            CarBookingData c = lines.get(i);
+            BookingRule broken = BookingRule.checkCar(c.carNo, c.source, c.dest, c.fare);
+            if (broken != null) report.add(i, broken);
+        }
+        return report;
+    }
+
+    /** Appends the valid lines of a batch with a single CAR_ADDED event; see addFlights. */
+    public ValidationReport addCars(List<CarBookingData> batch) {
+        checkWritable();
+        ValidationReport report = validateCars(batch);
+        List<CarBookingData> valid = report.isEmpty() ? batch : new ArrayList<>(report.validCount());
+        if (valid != batch) {
+            for (int i = 0; i < batch.size(); i++) if (report.isValid(i)) valid.add(batch.get(i));
+        }
+        if (valid.isEmpty()) return report;
+
+        int[] scales = carScales.clone();
+        Money total  = carTotal;
+        for (CarBookingData c : valid) total = with(scales, total, c.fare);
+        setTotals(flightTotal, total, gstRatePercent);
+        carScales = scales;
+
+        int first = cars.size();
+        for (CarBookingData c : valid) {
+            cars.add(new CarBookingData(++nextId, c.carNo.trim(), c.source.trim(), c.dest.trim(), c.fare));
+        }
+        indexCars(first);
+        fire(SessionEvent.Type.CAR_ADDED, first, valid.size());
+        return report;
+    }
+
+    private static void validateCar(String carNo, String src, String dest, Money fare) {
+        BookingRule broken = BookingRule.checkCar(carNo, src, dest, fare);
+        if (broken != null) throw new IllegalArgumentException(broken.message);
+    }
+
+    /** Updates an existing car entry by index; see updateFlight. */
     public void updateCar(int index, String carNo, String src, String dest, BigDecimal fare) {
-        removeCar(index);
-        cars.add(index, new CarBookingData(carNo.trim(), src.trim(), dest.trim(), fare));
+        if (index == cars.size()) addCar(carNo, src, dest, fare);
+        else replaceCar(cars.get(index).id, carNo, src, dest, fare);
+    }
+
+    /** Replaces the car rental with the given ID in place, after validation. O(1). */
+    public void replaceCar(long id, String carNo, String src, String dest, BigDecimal fare) {
+        replaceCar(id, carNo, src, dest, toFare(fare));
+    }
+
+    /** Replaces the car rental with the given ID in place; see replaceFlight. */
+    public void replaceCar(long id, String carNo, String src, String dest, Money fare) {
+        checkWritable();
+        int index = requireCar(id);
+        validateCar(carNo, src, dest, fare);
+        CarBookingData c      = new CarBookingData(id, carNo.trim(), src.trim(), dest.trim(), fare);
+        CarBookingData old    = cars.get(index);
+        int[]          scales = carScales.clone();
+        setTotals(flightTotal, without(scales, with(scales, carTotal, c.fare), old.fare), gstRatePercent);
+        carScales = scales;
+        cars.set(index, c);
+        fire(SessionEvent.Type.CAR_UPDATED, index);
+    }
+
+    /**
+     * Fares keep the value and scale they were entered with, as BigDecimal fares did,
+     * up to BookingRule.MAX_FARE_SCALE places.
+     */
+    static Money toFare(BigDecimal fare) {
+        try {
+            if (fare.scale() <= BookingRule.MAX_FARE_SCALE) return Money.of(fare);
+        } catch (ArithmeticException e) {
+            // too large for a long
+        }
+        throw new IllegalArgumentException(BookingRule.FARE_TOO_FINE.message);
     }
 
     public void removeFlight(int index) {
-        if (index >= 0 && index < flights.size()) flights.remove(index);
+        checkWritable();
+        if (index < 0 || index >= flights.size()) return;
+        FlightBookingData f      = flights.get(index);
+        int[]             scales = flightScales.clone();
+        setTotals(without(scales, flightTotal, f.fare), carTotal, gstRatePercent);
+        flightScales    = scales;
+        passengerTotal -= f.passengers;
+        flights.remove(index);
+        if (flightIndex != null) flightIndex.remove(f.id);
+        indexFlights(index);
+        fire(SessionEvent.Type.FLIGHT_REMOVED, index);
     }
 
     public void removeCar(int index) {
-        if (index >= 0 && index < cars.size()) cars.remove(index);
+        checkWritable();
+        if (index < 0 || index >= cars.size()) return;
+        CarBookingData c      = cars.get(index);
+        int[]          scales = carScales.clone();
+        setTotals(flightTotal, without(scales, carTotal, c.fare), gstRatePercent);
+        carScales = scales;
+        cars.remove(index);
+        if (carIndex != null) carIndex.remove(c.id);
+        indexCars(index);
+        fire(SessionEvent.Type.CAR_REMOVED, index);
+    }
+
+    /** Removes the flight with the given ID. Returns false if there is none. */
+    public boolean removeFlightById(long id) {
+        int index = indexOfFlight(id);
+        if (index < 0) return false;
+        removeFlight(index);
+        return true;
+    }
+
+    public boolean removeCarById(long id) {
+        int index = indexOfCar(id);
+        if (index < 0) return false;
+        removeCar(index);
+        return true;
+    }
+
+    /**
+     * Moves the flight with the given ID to position toIndex, shifting the lines in
+     * between. Listeners see it as FLIGHT_REMOVED at the old position followed by
+     * FLIGHT_ADDED at the new one.
+     */
+    public void moveFlight(long id, int toIndex) {
+        checkWritable();
+        int from = requireFlight(id);
+        Objects.checkIndex(toIndex, flights.size());
+        if (from == toIndex) return;
+        flights.add(toIndex, flights.remove(from));
+        indexFlights(Math.min(from, toIndex));
+        fire(SessionEvent.Type.FLIGHT_REMOVED, from);
+        fire(SessionEvent.Type.FLIGHT_ADDED, toIndex);
+    }
+
+    /** Moves the car rental with the given ID to position toIndex; see moveFlight. */
+    public void moveCar(long id, int toIndex) {
+        checkWritable();
+        int from = requireCar(id);
+        Objects.checkIndex(toIndex, cars.size());
+        if (from == toIndex) return;
+        cars.add(toIndex, cars.remove(from));
+        indexCars(Math.min(from, toIndex));
+        fire(SessionEvent.Type.CAR_REMOVED, from);
+        fire(SessionEvent.Type.CAR_ADDED, toIndex);
+    }
+
+    private void insertFlight(int index, FlightBookingData f) {
+        checkWritable();
+        int[] scales = flightScales.clone();
+        setTotals(with(scales, flightTotal, f.fare), carTotal, gstRatePercent);
+        flightScales    = scales;
+        passengerTotal += f.passengers;
+        f = withNewId(f);
+        flights.add(index, f);
+        indexFlights(index);
+        fire(SessionEvent.Type.FLIGHT_ADDED, index);
+    }
+
+    private void insertCar(int index, CarBookingData c) {
+        checkWritable();
+        int[] scales = carScales.clone();
+        setTotals(flightTotal, with(scales, carTotal, c.fare), gstRatePercent);
+        carScales = scales;
+        c = withNewId(c);
+        cars.add(index, c);
+        indexCars(index);
+        fire(SessionEvent.Type.CAR_ADDED, index);
     }
 
     public void reset() {
+        checkWritable();
         customerName  = "";
         contactNumber = "";
         address       = "";
@@ -138,42 +539,249 @@ public class BookingSession implements Serializable {
         bookingDate   = new Date();
         flights.clear();
         cars.clear();
+        flightIndex = null;
+        carIndex    = null;
+        recomputeTotals();
         // Company details and GST rate are intentionally preserved across sessions
+        fire(SessionEvent.Type.RESET, -1);
     }
 
     // -------------------------------------------------------------------------
-    // Calculations
+    // Line IDs
     // -------------------------------------------------------------------------
 
-    public BigDecimal getSubtotal() {
-        return getFlightTotal().add(getCarTotal());
+    /** Current position of the flight with the given ID, or -1. O(1). */
+    public int indexOfFlight(long id) {
+        Integer index = flightIndex().get(id);
+        return index == null ? -1 : index;
+    }
+
+    public int indexOfCar(long id) {
+        Integer index = carIndex().get(id);
+        return index == null ? -1 : index;
     }
 
-    public BigDecimal getGstAmount() {
-        return getSubtotal()
-               .multiply(gstRatePercent)
-               .divide(new BigDecimal("100"), 2, RoundingMode.HALF_UP);
+    /** The flight with the given ID, or null. */
+    public FlightBookingData getFlightById(long id) {
+        int index = indexOfFlight(id);
+        return index < 0 ? null : flights.get(index);
     }
 
-    public BigDecimal getTotalAmount() {
-        return getSubtotal().add(getGstAmount());
+    public CarBookingData getCarById(long id) {
+        int index = indexOfCar(id);
+        return index < 0 ? null : cars.get(index);
     }
 
-    public BigDecimal getFlightTotal() {
-        return flights.stream()
-                      .map(f -> f.fare)
-                      .reduce(BigDecimal.ZERO, BigDecimal::add);
+    private int requireFlight(long id) {
+        int index = indexOfFlight(id);
+        if (index < 0) throw new IllegalArgumentException("No flight with ID " + id);
+        return index;
     }
 
-    public BigDecimal getCarTotal() {
-        return cars.stream()
-                   .map(c -> c.fare)
-                   .reduce(BigDecimal.ZERO, BigDecimal::add);
+    private int requireCar(long id) {
+        int index = indexOfCar(id);
+        if (index < 0) throw new IllegalArgumentException("No car rental with ID " + id);
+        return index;
     }
 
+    private FlightBookingData withNewId(FlightBookingData f) {
+        return new FlightBookingData(++nextId, f.pnr, f.source, f.dest, f.fare, f.passengers);
+    }
+
+    private CarBookingData withNewId(CarBookingData c) {
+        return new CarBookingData(++nextId, c.carNo, c.source, c.dest, c.fare);
+    }
+
+    private Map<Long, Integer> flightIndex() {
+        Map<Long, Integer> index = flightIndex;
+        if (index == null) {
+            index = new HashMap<>(flights.size() * 4 / 3 + 1);
+            for (int i = 0; i < flights.size(); i++) index.put(flights.get(i).id, i);
+            flightIndex = index;
+        }
+        return index;
+    }
+
+    private Map<Long, Integer> carIndex() {
+        Map<Long, Integer> index = carIndex;
+        if (index == null) {
+            index = new HashMap<>(cars.size() * 4 / 3 + 1);
+            for (int i = 0; i < cars.size(); i++) index.put(cars.get(i).id, i);
+            carIndex = index;
+        }
+        return index;
+    }
+
+    /** Re-records the position of every flight from index from on, after lines shifted. */
+    private void indexFlights(int from) {
+        Map<Long, Integer> index = flightIndex;
+        if (index == null) return; // not built yet; will be built in full on first lookup
+        for (int i = from; i < flights.size(); i++) index.put(flights.get(i).id, i);
+    }
+
+    private void indexCars(int from) {
+        Map<Long, Integer> index = carIndex;
+        if (index == null) return;
+        for (int i = from; i < cars.size(); i++) index.put(cars.get(i).id, i);
+    }
+
+    // -------------------------------------------------------------------------
+    // Change Notification
+    // -------------------------------------------------------------------------
+
+    /**
+     * Registers a listener for change events. Events are delivered synchronously on
+     * the thread that made the change — the EDT for every panel in this app.
+     */
+    public void addSessionListener(SessionListener l) {
+        if (listeners == null) listeners = new CopyOnWriteArrayList<>();
+        listeners.add(l);
+    }
+
+    public void removeSessionListener(SessionListener l) {
+        if (listeners != null) listeners.remove(l);
+    }
+
+    /**
+     * Incremented on every change. A view that remembers the version it last
+     * rendered can skip work when the version has not moved.
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    private void fire(SessionEvent.Type type, int index) {
+        fire(type, index, 1);
+    }
+
+    private void fire(SessionEvent.Type type, int index, int count) {
+        version++;
+        if (listeners == null || listeners.isEmpty()) return;
+        SessionEvent e = new SessionEvent(this, type, index, count, version);
+        for (SessionListener l : listeners) l.sessionChanged(e);
+    }
+
+    // -------------------------------------------------------------------------
+    // Calculations
+    // -------------------------------------------------------------------------
+
+    // Totals are running aggregates, so every getter here is O(1).
+
+    public Money getSubtotal()    { verifyTotals(); return subtotal; }
+    public Money getGstAmount()   { verifyTotals(); return gstAmount; }
+    public Money getTotalAmount() { verifyTotals(); return totalAmount; }
+    public Money getFlightTotal() { verifyTotals(); return flightTotal; }
+    public Money getCarTotal()    { verifyTotals(); return carTotal; }
+
     public int getTotalFlights()    { return flights.size(); }
     public int getTotalCars()       { return cars.size(); }
-    public int getTotalPassengers() { return flights.stream().mapToInt(f -> f.passengers).sum(); }
+    public int getTotalPassengers() { verifyTotals(); return passengerTotal; }
+
+    /**
+     * Turns the consistency check on or off for all sessions. While on, every
+     * totals getter recomputes from the lists with the original BigDecimal
+     * formulas and throws IllegalStateException if the running Money aggregates
+     * differ in value or scale. Meant for tests and debugging; SessionCheck
+     * runs with it on.
+     */
+    public static void setConsistencyChecks(boolean enabled) {
+        checkTotals = enabled;
+    }
+
+    /**
+     * Sets the running totals for new flight and car totals at the given GST rate.
+     * Every value is worked out before any field is set, so if one overflows this
+     * throws IllegalArgumentException and the totals stay as they were. Mutators
+     * call it before touching the lists, which keeps a failed edit from changing
+     * the session at all.
+     */
+    private void setTotals(Money flights, Money cars, BigDecimal rate) {
+        Money sub, gst, total;
+        try {
+            sub   = flights.plus(cars);
+            gst   = sub.percent(rate);
+            total = sub.plus(gst);
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException(TOTAL_TOO_LARGE);
+        }
+        flightTotal = flights;
+        carTotal    = cars;
+        subtotal    = sub;
+        gstAmount   = gst;
+        totalAmount = total;
+    }
+
+    /** Rebuilds every aggregate from the lists. */
+    private void recomputeTotals() {
+        int[] fScales   = new int[Money.MAX_SCALE + 1];
+        int[] cScales   = new int[Money.MAX_SCALE + 1];
+        Money flightSum = Money.ZERO, carSum = Money.ZERO;
+        int   pax       = 0;
+        for (FlightBookingData f : flights) {
+            flightSum = with(fScales, flightSum, f.fare);
+            pax      += f.passengers;
+        }
+        for (CarBookingData c : cars) carSum = with(cScales, carSum, c.fare);
+        setTotals(flightSum, carSum, gstRatePercent);
+        flightScales   = fScales;
+        carScales      = cScales;
+        passengerTotal = pax;
+    }
+
+    /**
+     * total + fare, counting the fare's scale in scales. Throws
+     * IllegalArgumentException, leaving scales alone, if the sum overflows.
+     */
+    private static Money with(int[] scales, Money total, Money fare) {
+        Money sum;
+        try {
+            sum = total.plus(fare);
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException(TOTAL_TOO_LARGE);
+        }
+        scales[fare.scale()]++;
+        return sum;
+    }
+
+    /** total − fare, at the scale a fresh sum of the remaining fares would have. */
+    private static Money without(int[] scales, Money total, Money fare) {
+        scales[fare.scale()]--;
+        int top = scales.length - 1;
+        while (top > 0 && scales[top] == 0) top--;
+        return total.minus(fare).withScale(top);
+    }
+
+    private void verifyTotals() {
+        if (!checkTotals) return;
+        BigDecimal flights = BigDecimal.ZERO, cars = BigDecimal.ZERO;
+        int        pax     = 0;
+        for (FlightBookingData f : this.flights) {
+            flights = flights.add(f.fare.toBigDecimal());
+            pax    += f.passengers;
+        }
+        for (CarBookingData c : this.cars) cars = cars.add(c.fare.toBigDecimal());
+        BigDecimal sub = flights.add(cars);
+        BigDecimal gst = sub.multiply(gstRatePercent).divide(HUNDRED, 2, RoundingMode.HALF_UP);
+        if (!flights.equals(flightTotal.toBigDecimal()) || !cars.equals(carTotal.toBigDecimal())
+                || !sub.equals(subtotal.toBigDecimal()) || !gst.equals(gstAmount.toBigDecimal())
+                || !sub.add(gst).equals(totalAmount.toBigDecimal()) || pax != passengerTotal)
+            throw new IllegalStateException("Running totals out of step: flights " + flightTotal + " vs " + flights
+                + ", cars " + carTotal + " vs " + cars + ", GST " + gstAmount + " vs " + gst
+                + ", passengers " + passengerTotal + " vs " + pax);
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        flights = new ChunkedList<>(flights);
+        cars    = new ChunkedList<>(cars);
+        for (int i = 0; i < flights.size(); i++) flights.set(i, withNewId(flights.get(i)));
+        for (int i = 0; i < cars.size(); i++)    cars.set(i, withNewId(cars.get(i)));
+        try {
+            recomputeTotals();
+        } catch (IllegalArgumentException e) {
+            throw new InvalidObjectException(e.getMessage());
+        }
+    }
 
     // -------------------------------------------------------------------------
     // Validation  (single, consistent method)
@@ -193,17 +801,131 @@ public class BookingSession implements Serializable {
     // Persistence
     // -------------------------------------------------------------------------
 
-    /** Saves this session to a file. */
+    /** Saves this session to a file in the compact binary format (see SessionFormat). */
     public void saveTo(File file) throws IOException {
-        try (ObjectOutputStream oos = new ObjectOutputStream(new FileOutputStream(file))) {
-            oos.writeObject(this);
+        try (OutputStream out = new BufferedOutputStream(new FileOutputStream(file))) {
+            SessionFormat.write(this, out);
         }
     }
 
-    /** Loads a previously saved session from a file. */
+    /** Loads a previously saved session from a file, in either the binary or the legacy serialized format. */
     public static BookingSession loadFrom(File file) throws IOException, ClassNotFoundException {
-        try (ObjectInputStream ois = new ObjectInputStream(new FileInputStream(file))) {
-            return (BookingSession) ois.readObject();
+        try (BufferedInputStream in = new BufferedInputStream(new FileInputStream(file))) {
+            if (SessionFormat.isBinary(in)) return SessionFormat.read(in);
+            try (ObjectInputStream ois = new ObjectInputStream(in)) {
+                return (BookingSession) ois.readObject();
+            }
+        }
+    }
+
+    /**
+     * Reads just the invoice summary of a saved session. For binary files only the
+     * header at the start of the file is read; legacy serialized files have no
+     * header and are loaded in full.
+     */
+    public static Summary readSummary(File file) throws IOException, ClassNotFoundException {
+        try (BufferedInputStream in = new BufferedInputStream(new FileInputStream(file), 512)) {
+            if (SessionFormat.isBinary(in)) return SessionFormat.readSummary(in);
+        }
+        return new Summary(loadFrom(file));
+    }
+
+    /**
+     * Detached, writable copy of this session's data at the same version, with no
+     * listeners. Records are immutable, and the lists are shared copy-on-write
+     * (see ChunkedList): the copy costs about one reference per 64 lines, and each
+     * session copies a block of 64 the first time it changes a line in it. Line IDs
+     * carry over. Background work such as PDF export renders from a copy taken on
+     * the EDT, so later edits cannot change the document halfway.
+     */
+    public BookingSession copy() {
+        BookingSession c = new BookingSession();
+        c.companyName    = companyName;
+        c.companyTagline = companyTagline;
+        c.companyEmail   = companyEmail;
+        c.companyPhone   = companyPhone;
+        c.customerName   = customerName;
+        c.contactNumber  = contactNumber;
+        c.address        = address;
+        c.invoiceNumber  = invoiceNumber;
+        c.bookingDate    = bookingDate == null ? null : (Date) bookingDate.clone();
+        c.gstRatePercent = gstRatePercent;
+        c.flights        = ((ChunkedList<FlightBookingData>) flights).share();
+        c.cars           = ((ChunkedList<CarBookingData>) cars).share();
+        c.nextId         = nextId;
+        c.version        = version;
+        c.flightTotal    = flightTotal;
+        c.carTotal       = carTotal;
+        c.flightScales   = flightScales.clone();
+        c.carScales      = carScales.clone();
+        c.passengerTotal = passengerTotal;
+        c.subtotal       = subtotal;
+        c.gstAmount      = gstAmount;
+        c.totalAmount    = totalAmount;
+        return c;
+    }
+
+    /**
+     * Read-only copy for publishing to other threads: every mutator on it throws
+     * IllegalStateException, so it can be shared without locking.
+     */
+    BookingSession readOnlyCopy() {
+        BookingSession c = copy();
+        c.readOnly = true;
+        return c;
+    }
+
+    /** True for the read-only snapshots published by SharedSession. */
+    public boolean isReadOnly() {
+        return readOnly;
+    }
+
+    private void checkWritable() {
+        if (readOnly) throw new IllegalStateException("Session snapshot is read-only; edit it through its SharedSession");
+    }
+
+    /** Restores a saved flight as-is, under a new ID; it was validated when first added. */
+    void restoreFlight(FlightBookingData f) {
+        insertFlight(flights.size(), f);
+    }
+
+    /** Restores a saved car rental as-is; it was validated when first added. */
+    void restoreCar(CarBookingData c) {
+        insertCar(cars.size(), c);
+    }
+
+    /** Invoice-level details of a saved session, as stored in the binary file header. */
+    public static final class Summary {
+        public final String     invoiceNumber;
+        public final String     customerName;
+        public final Date       bookingDate;
+        public final BigDecimal gstRatePercent;
+        public final Money      subtotal;
+        public final Money      gstAmount;
+        public final Money      totalAmount;
+        public final int        flightCount;
+        public final int        carCount;
+        public final int        passengerCount;
+
+        Summary(String invoiceNumber, String customerName, Date bookingDate, BigDecimal gstRatePercent,
+                Money subtotal, Money gstAmount, Money totalAmount,
+                int flightCount, int carCount, int passengerCount) {
+            this.invoiceNumber  = invoiceNumber;
+            this.customerName   = customerName;
+            this.bookingDate    = bookingDate;
+            this.gstRatePercent = gstRatePercent;
+            this.subtotal       = subtotal;
+            this.gstAmount      = gstAmount;
+            this.totalAmount    = totalAmount;
+            this.flightCount    = flightCount;
+            this.carCount       = carCount;
+            this.passengerCount = passengerCount;
+        }
+
+        Summary(BookingSession s) {
+            this(s.getInvoiceNumber(), s.getCustomerName(), s.getBookingDate(), s.getGstRatePercent(),
+                 s.getSubtotal(), s.getGstAmount(), s.getTotalAmount(),
+                 s.getTotalFlights(), s.getTotalCars(), s.getTotalPassengers());
         }
     }
 
@@ -223,6 +945,25 @@ public class BookingSession implements Serializable {
     public String getInvoiceNumber()  { return invoiceNumber; }
     public Date   getBookingDate()    { return bookingDate; }
 
-    public List<FlightBookingData> getFlights() { return new ArrayList<>(flights); }
-    public List<CarBookingData>    getCars()    { return new ArrayList<>(cars); }
+    /**
+     * Live read-only view of the flights — no copy is made. It reflects later edits,
+     * so callers that need a stable list across mutations should copy it.
+     */
+    public List<FlightBookingData> getFlights() {
+        if (flightsView == null) flightsView = Collections.unmodifiableList(flights);
+        return flightsView;
+    }
+
+    /** Live read-only view of the car rentals; see getFlights(). */
+    public List<CarBookingData> getCars() {
+        if (carsView == null) carsView = Collections.unmodifiableList(cars);
+        return carsView;
+    }
+
+    /** Flight at index; throws IndexOutOfBoundsException like List.get. */
+    public FlightBookingData getFlight(int index) { return flights.get(index); }
+    public CarBookingData    getCar(int index)    { return cars.get(index); }
+
+    public void forEachFlight(Consumer<? super FlightBookingData> action) { flights.forEach(action); }
+    public void forEachCar(Consumer<? super CarBookingData> action)       { cars.forEach(action); }
 }
@@ -2,10 +2,10 @@ package bill;
 
 import javax.swing.*;
 import javax.swing.border.EmptyBorder;
-import javax.swing.table.DefaultTableModel;
 import java.awt.*;
+import java.io.File;
+import java.io.IOException;
 import java.math.BigDecimal;
-import java.util.List;
 
 /**
  * Step 3 — add, edit, and remove car rental bookings.
@@ -20,10 +20,10 @@ import java.util.List;
 public class CarForm extends BasePanel {
 
     private JTextField txtCarNo, txtSrc, txtDest, txtFare;
-    private DefaultTableModel tableModel;
+    private CarTableModel tableModel;
     private JTable     table;
     private JButton    btnAdd;
-    private int        editingIndex = -1;
+    private long       editingId;      // 0 means "add mode"
 
     public CarForm(MainApp controller, BookingSession session) {
         super(controller, session);
@@ -72,14 +72,11 @@ public class CarForm extends BasePanel {
         JPanel rightPanel = new JPanel(new BorderLayout(0, 8));
         rightPanel.setOpaque(false);
 
-        String[] cols = {"Car No", "Route", "Fare", "Del"};
-        tableModel = new DefaultTableModel(cols, 0) {
-            @Override public boolean isCellEditable(int r, int c) { return false; }
-        };
+        tableModel = new CarTableModel(session);
         table = new JTable(tableModel);
         styleTable(table);
-        table.getColumnModel().getColumn(3).setMaxWidth(55);
-        table.getColumnModel().getColumn(3).setMinWidth(55);
+        table.getColumnModel().getColumn(CarTableModel.DELETE_COLUMN).setMaxWidth(55);
+        table.getColumnModel().getColumn(CarTableModel.DELETE_COLUMN).setMinWidth(55);
 
         table.getSelectionModel().addListSelectionListener(e -> {
             if (!e.getValueIsAdjusting()) populateFormFromRow(table.getSelectedRow());
@@ -89,10 +86,9 @@ public class CarForm extends BasePanel {
             @Override public void mouseClicked(java.awt.event.MouseEvent e) {
                 int row = table.rowAtPoint(e.getPoint());
                 int col = table.columnAtPoint(e.getPoint());
-                if (col == 3 && row >= 0) {
-                    if (editingIndex == row) cancelEdit();
+                if (col == CarTableModel.DELETE_COLUMN && row >= 0) {
+                    if (editingId == session.getCar(row).id) cancelEdit();
                     session.removeCar(row);
-                    refreshTable();
                 }
             }
         });
@@ -102,6 +98,13 @@ public class CarForm extends BasePanel {
         scroll.getViewport().setBackground(Color.WHITE);
         rightPanel.add(scroll, BorderLayout.CENTER);
 
+        JPanel tableBar = new JPanel(new FlowLayout(FlowLayout.RIGHT, 0, 0));
+        tableBar.setOpaque(false);
+        JButton btnImport = createStyledButton("Import CSV…", PRIMARY_COLOR, false);
+        btnImport.addActionListener(e -> importCsv());
+        tableBar.add(btnImport);
+        rightPanel.add(tableBar, BorderLayout.NORTH);
+
         content.add(leftCard);
         content.add(rightPanel);
         add(content, BorderLayout.CENTER);
@@ -120,8 +123,6 @@ public class CarForm extends BasePanel {
         bottom.add(btnBack);
         bottom.add(btnNext);
         add(bottom, BorderLayout.SOUTH);
-
-        refreshTable();
     }
 
     // -------------------------------------------------------------------------
@@ -148,8 +149,8 @@ public class CarForm extends BasePanel {
         }
 
         try {
-            if (editingIndex >= 0) {
-                session.updateCar(editingIndex, carNo, src, dest, fare);
+            if (editingId != 0) {
+                session.replaceCar(editingId, carNo, src, dest, fare);
             } else {
                 session.addCar(carNo, src, dest, fare);
             }
@@ -159,35 +160,43 @@ public class CarForm extends BasePanel {
         }
 
         clearForm();
-        refreshTable();
     }
 
     private void populateFormFromRow(int row) {
         if (row < 0) return;
-        List<BookingSession.CarBookingData> cars = session.getCars();
-        if (row >= cars.size()) return;
+        if (row >= session.getTotalCars()) return;
 
-        BookingSession.CarBookingData c = cars.get(row);
+        BookingSession.CarBookingData c = session.getCar(row);
         txtCarNo.setText(c.carNo);
         txtSrc.setText(c.source);
         txtDest.setText(c.dest);
         txtFare.setText(c.fare.toPlainString());
 
-        editingIndex = row;
+        editingId = c.id;
         btnAdd.setText("✔ Update Car");
     }
 
     private void cancelEdit() {
-        editingIndex = -1;
+        editingId = 0;
     }
 
     private void clearForm() {
         txtCarNo.setText(""); txtSrc.setText(""); txtDest.setText(""); txtFare.setText("");
-        editingIndex = -1;
+        editingId = 0;
         btnAdd.setText("+ Add Car");
         table.clearSelection();
     }
 
+    private void importCsv() {
+        File file = chooseCsvFile();
+        if (file == null) return;
+        try {
+            showImportReport(CsvImporter.importCars(file, session), "car rentals");
+        } catch (IllegalArgumentException | IOException ex) {
+            showError("Could not import " + file.getName() + ":\n" + ex.getMessage());
+        }
+    }
+
     private void advance() {
         if (!session.hasBookings()) {
             showWarning("Please add at least one flight or car booking before generating the bill.");
@@ -195,20 +204,4 @@ public class CarForm extends BasePanel {
         }
         controller.showScreen(MainApp.BILL_PANEL);
     }
-
-    // -------------------------------------------------------------------------
-    // Table
-    // -------------------------------------------------------------------------
-
-    private void refreshTable() {
-        tableModel.setRowCount(0);
-        for (BookingSession.CarBookingData c : session.getCars()) {
-            tableModel.addRow(new Object[]{
-                c.carNo,
-                c.source + " → " + c.dest,
-                BasePanel.CURRENCY + " " + c.fare.toPlainString(),
-                "🗑 Del"
-            });
-        }
-    }
 }
@@ -0,0 +1,73 @@
+package bill;
+
+import javax.swing.table.AbstractTableModel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Table model for CarForm. Same approach as {@link FlightTableModel}: rows come
+ * from the session, formatted cells are cached per row, and each session event
+ * touches only the affected row.
+ */
+class CarTableModel extends AbstractTableModel implements SessionListener {
+
+    static final int DELETE_COLUMN = 3;
+
+    private static final String[] COLUMNS = {"Car No", "Route", "Fare", "Del"};
+
+    private final BookingSession session;
+    private final List<Object[]> cells = new ArrayList<>(); // null until the row is first read
+
+    CarTableModel(BookingSession session) {
+        this.session = session;
+        cells.addAll(Collections.nCopies(session.getTotalCars(), null));
+        session.addSessionListener(this);
+    }
+
+    @Override public int     getRowCount()                   { return cells.size(); }
+    @Override public int     getColumnCount()                { return COLUMNS.length; }
+    @Override public String  getColumnName(int col)          { return COLUMNS[col]; }
+    @Override public boolean isCellEditable(int row, int col) { return false; }
+
+    @Override
+    public Object getValueAt(int row, int col) {
+        Object[] r = cells.get(row);
+        if (r == null) {
+            BookingSession.CarBookingData c = session.getCar(row);
+            r = new Object[]{
+                c.carNo,
+                c.source + " → " + c.dest,
+                BasePanel.CURRENCY + " " + c.fare.toPlainString(),
+                "🗑 Del"
+            };
+            cells.set(row, r);
+        }
+        return r[col];
+    }
+
+    @Override
+    public void sessionChanged(SessionEvent e) {
+        switch (e.type) {
+            case CAR_ADDED:
+                cells.addAll(e.index, Collections.nCopies(e.count, null));
+                fireTableRowsInserted(e.index, e.lastIndex());
+                break;
+            case CAR_UPDATED:
+                cells.set(e.index, null);
+                fireTableRowsUpdated(e.index, e.index);
+                break;
+            case CAR_REMOVED:
+                cells.remove(e.index);
+                fireTableRowsDeleted(e.index, e.index);
+                break;
+            case RESET:
+                cells.clear();
+                cells.addAll(Collections.nCopies(session.getTotalCars(), null));
+                fireTableDataChanged();
+                break;
+            default:
+                break;
+        }
+    }
+}
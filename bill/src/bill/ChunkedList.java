@@ -0,0 +1,153 @@
+package bill;
+
+import java.io.ObjectStreamException;
+import java.io.Serializable;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Objects;
+import java.util.RandomAccess;
+
+/**
+ * The list behind BookingSession's flight and car lines: elements in fixed-size
+ * chunks of {@value #CHUNK}, so that copies can share them.
+ *
+ * {@link #share()} returns a copy holding the same chunks. Neither list owns a
+ * chunk after that, and the first write to a chunk it does not own copies the
+ * chunk first, so the two never see each other's changes. A share therefore
+ * costs one copy of the chunk directory (size / 64 references), and the edits
+ * that follow pay for the chunks they touch: setting or appending an element
+ * copies at most one chunk, while inserting or removing in the middle shifts, and
+ * so may copy, every chunk after it, as an ArrayList would shift its elements.
+ *
+ * Not thread-safe. A list that is never written after a share can be read by
+ * any number of threads, which is how SharedSession's snapshots use it.
+ *
+ * Serializes as an ArrayList, so saved sessions do not depend on this class.
+ */
+final class ChunkedList<E> extends AbstractList<E> implements RandomAccess, Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    static final int CHUNK = 64;
+    private static final int SHIFT = 6;
+    private static final int MASK  = CHUNK - 1;
+
+    private Object[][] chunks = new Object[4][];
+    private boolean[]  owned  = new boolean[4]; // chunks[i] is ours to write in place
+    private int        chunkCount;
+    private int        size;
+
+    ChunkedList() {
+    }
+
+    ChunkedList(Collection<? extends E> items) {
+        addAll(items);
+    }
+
+    /** A copy sharing every chunk with this list; see the class comment for the cost. */
+    ChunkedList<E> share() {
+        ChunkedList<E> copy = new ChunkedList<>();
+        copy.chunks     = Arrays.copyOf(chunks, Math.max(4, chunkCount));
+        copy.owned      = new boolean[copy.chunks.length];
+        copy.chunkCount = chunkCount;
+        copy.size       = size;
+        Arrays.fill(owned, 0, chunkCount, false);
+        return copy;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public E get(int index) {
+        Objects.checkIndex(index, size);
+        return (E) chunks[index >>> SHIFT][index & MASK];
+    }
+
+    @Override
+    public E set(int index, E element) {
+        E old = get(index);
+        writable(index >>> SHIFT)[index & MASK] = element;
+        return old;
+    }
+
+    @Override
+    public void add(int index, E element) {
+        Objects.checkIndex(index, size + 1);
+        if (size == chunkCount * CHUNK) appendChunk();
+        int first = index >>> SHIFT, last = size >>> SHIFT;
+        // Shift right by one, last chunk first: each chunk passes its last element on
+        for (int c = last; c > first; c--) {
+            Object[] chunk = writable(c);
+            System.arraycopy(chunk, 0, chunk, 1, c == last ? size & MASK : CHUNK - 1);
+            chunk[0] = chunks[c - 1][CHUNK - 1];
+        }
+        Object[] chunk = writable(first);
+        int      off   = index & MASK;
+        System.arraycopy(chunk, off, chunk, off + 1, (first == last ? size & MASK : CHUNK - 1) - off);
+        chunk[off] = element;
+        size++;
+        modCount++;
+    }
+
+    @Override
+    public E remove(int index) {
+        E   old   = get(index);
+        int first = index >>> SHIFT, last = (size - 1) >>> SHIFT;
+        // Shift left by one: each chunk takes the first element of the next
+        Object[] chunk = writable(first);
+        int      off   = index & MASK;
+        System.arraycopy(chunk, off + 1, chunk, off, (first == last ? (size - 1) & MASK : CHUNK - 1) - off);
+        for (int c = first + 1; c <= last; c++) {
+            Object[] next = writable(c);
+            chunk[CHUNK - 1] = next[0];
+            System.arraycopy(next, 1, next, 0, c == last ? (size - 1) & MASK : CHUNK - 1);
+            chunk = next;
+        }
+        chunk[(size - 1) & MASK] = null;
+        size--;
+        if (size == (chunkCount - 1) * CHUNK) {
+            chunks[--chunkCount] = null;
+            owned[chunkCount]    = false;
+        }
+        modCount++;
+        return old;
+    }
+
+    @Override
+    public void clear() {
+        Arrays.fill(chunks, 0, chunkCount, null);
+        Arrays.fill(owned, 0, chunkCount, false);
+        chunkCount = 0;
+        size       = 0;
+        modCount++;
+    }
+
+    /** Chunk c, copied first unless this list already owns it. */
+    private Object[] writable(int c) {
+        if (!owned[c]) {
+            chunks[c] = chunks[c].clone();
+            owned[c]  = true;
+        }
+        return chunks[c];
+    }
+
+    private void appendChunk() {
+        if (chunkCount == chunks.length) {
+            chunks = Arrays.copyOf(chunks, chunkCount * 2);
+            owned  = Arrays.copyOf(owned, chunkCount * 2);
+        }
+        chunks[chunkCount] = new Object[CHUNK];
+        owned[chunkCount]  = true;
+        chunkCount++;
+    }
+
+    private Object writeReplace() throws ObjectStreamException {
+        return new ArrayList<>(this);
+    }
+}
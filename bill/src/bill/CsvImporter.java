@@ -0,0 +1,375 @@
+package bill;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * Bulk import of flight or car lines from a spreadsheet export (CSV).
+ *
+ * The first row must be a header. Columns are matched by name, case- and
+ * punctuation-insensitively, so "PNR", "Pnr No." and "pnr_number" all work:
+ * <pre>
+ *   flights — PNR, Source/From, Destination/To (or one Route column), Fare, Pax (optional, default 1)
+ *   cars    — Car No/Vehicle No, Pickup/From, Drop/To (or Route), Fare
+ * </pre>
+ * Route cells are split on "→", "->", " - " or " to ". The delimiter is detected
+ * from the header (comma, semicolon or tab), quoted fields may contain delimiters,
+ * doubled quotes and line breaks, and fares may carry a currency prefix and
+ * thousands separators ("Rs. 12,500.50").
+ *
+ * The file is parsed one record at a time, so memory beyond the imported lines
+ * themselves stays constant. Cells that cannot be parsed are reported as the
+ * file is read; the booking rules are then checked for the whole batch at once by
+ * BookingSession.addFlights / addCars, which commit only the valid rows, with a
+ * single change event. Skipped rows are listed in the Report by file line.
+ */
+public final class CsvImporter {
+
+    /** At most this many row errors are kept as messages; the rest are only counted. */
+    public static final int MAX_ERRORS = 100;
+
+    private static final Pattern ROUTE_SPLIT   = Pattern.compile("\\s*(?:→|->|–|—|\\s-\\s|\\sto\\s)\\s*", Pattern.CASE_INSENSITIVE);
+    private static final Pattern NON_ALNUM     = Pattern.compile("[^a-z0-9]");
+    private static final Pattern FARE_NOISE    = Pattern.compile("(?i)^(?:rs\\.?|inr|₹)|[,\\s]");
+
+    private CsvImporter() {}
+
+    /** What an import did. */
+    public static final class Report {
+        public final int          imported;
+        public final int          skipped;
+        public final List<String> errors;   // "Line 12: Fare must be greater than zero.", at most MAX_ERRORS
+
+        Report(int imported, int skipped, List<String> errors) {
+            this.imported = imported;
+            this.skipped  = skipped;
+            this.errors   = Collections.unmodifiableList(errors);
+        }
+    }
+
+    // -------------------------------------------------------------------------
+    // Entry Points
+    // -------------------------------------------------------------------------
+
+    public static Report importFlights(File file, BookingSession session) throws IOException {
+        try (BufferedReader in = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+            return importFlights(in, session);
+        }
+    }
+
+    public static Report importCars(File file, BookingSession session) throws IOException {
+        try (BufferedReader in = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+            return importCars(in, session);
+        }
+    }
+
+    /**
+     * Reads flight lines from in and appends the valid ones to session.
+     * Throws IllegalArgumentException if the header lacks a required column.
+     */
+    public static Report importFlights(Reader in, BookingSession session) throws IOException {
+        CsvReader csv  = new CsvReader(in);
+        Columns   cols = new Columns(csv.readHeader());
+        int pnr   = cols.require("PNR",  "pnr", "pnrno", "pnrnumber", "bookingref", "reference", "ref");
+        int pax   = cols.find("pax", "passengers", "passenger", "noofpax", "travellers", "travelers");
+        Route route = cols.route("Source and Destination",
+                                 new String[]{"source", "src", "from", "origin"},
+                                 new String[]{"destination", "dest", "to"});
+        int fare  = cols.fare();
+
+        List<BookingSession.FlightBookingData> batch = new ArrayList<>();
+        Errors errors = new Errors();
+        String[] row;
+        while ((row = csv.next()) != null) {
+            if (isBlank(row)) continue;
+            try {
+                String[] ends   = route.split(row);
+                Money    amount = parseFare(cell(row, fare));
+                int      people = pax < 0 || cell(row, pax).isEmpty() ? 1 : parsePax(cell(row, pax));
+                batch.add(new BookingSession.FlightBookingData(cell(row, pnr), ends[0], ends[1], amount, people));
+                errors.parsed(csv.recordLine());
+            } catch (IllegalArgumentException e) {
+                errors.malformed(csv.recordLine(), e.getMessage());
+            }
+        }
+        return errors.report(session.addFlights(batch));
+    }
+
+    /** Car rental counterpart of importFlights. */
+    public static Report importCars(Reader in, BookingSession session) throws IOException {
+        CsvReader csv  = new CsvReader(in);
+        Columns   cols = new Columns(csv.readHeader());
+        int carNo = cols.require("Car No", "carno", "carnumber", "vehicleno", "vehiclenumber", "vehicle",
+                                 "car", "registration", "regno");
+        Route route = cols.route("Pickup and Drop",
+                                 new String[]{"pickup", "source", "src", "from", "origin"},
+                                 new String[]{"drop", "destination", "dest", "to"});
+        int fare  = cols.fare();
+
+        List<BookingSession.CarBookingData> batch = new ArrayList<>();
+        Errors errors = new Errors();
+        String[] row;
+        while ((row = csv.next()) != null) {
+            if (isBlank(row)) continue;
+            try {
+                String[] ends   = route.split(row);
+                Money    amount = parseFare(cell(row, fare));
+                batch.add(new BookingSession.CarBookingData(cell(row, carNo), ends[0], ends[1], amount));
+                errors.parsed(csv.recordLine());
+            } catch (IllegalArgumentException e) {
+                errors.malformed(csv.recordLine(), e.getMessage());
+            }
+        }
+        return errors.report(session.addCars(batch));
+    }
+
+    // -------------------------------------------------------------------------
+    // Cell Parsing
+    // -------------------------------------------------------------------------
+
+    private static String cell(String[] row, int col) {
+        return col < row.length ? row[col].trim() : "";
+    }
+
+    private static boolean isBlank(String[] row) {
+        for (String s : row) if (!s.isBlank()) return false;
+        return true;
+    }
+
+    private static Money parseFare(String s) {
+        String digits = FARE_NOISE.matcher(s).replaceAll("");
+        if (digits.isEmpty()) throw new IllegalArgumentException("Fare is missing.");
+        BigDecimal fare;
+        try {
+            fare = new BigDecimal(digits);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Fare is not a number: " + s);
+        }
+        return BookingSession.toFare(fare);
+    }
+
+    private static int parsePax(String s) {
+        try {
+            return Integer.parseInt(s);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Passengers is not a whole number: " + s);
+        }
+    }
+
+    // -------------------------------------------------------------------------
+    // Header Mapping
+    // -------------------------------------------------------------------------
+
+    private static final class Columns {
+        private final String[] names;
+
+        Columns(String[] header) {
+            if (header == null) throw new IllegalArgumentException("The file is empty.");
+            names = new String[header.length];
+            for (int i = 0; i < header.length; i++) names[i] = normalise(header[i]);
+        }
+
+        /** Index of the first column matching any alias, in alias order; -1 if none. */
+        int find(String... aliases) {
+            for (String a : aliases) {
+                String n = normalise(a);
+                for (int i = 0; i < names.length; i++) if (names[i].equals(n)) return i;
+            }
+            return -1;
+        }
+
+        int require(String label, String... aliases) {
+            int i = find(aliases);
+            if (i < 0) throw new IllegalArgumentException("No " + label + " column in the header.");
+            return i;
+        }
+
+        /** Fare column: "Fare", "Fare (Rs.)", "Amount" or "Price". */
+        int fare() {
+            int i = find("fare", "amount", "price");
+            for (int c = 0; i < 0 && c < names.length; c++) if (names[c].startsWith("fare")) i = c;
+            if (i < 0) throw new IllegalArgumentException("No Fare column in the header.");
+            return i;
+        }
+
+        /** Separate from / to columns if both are present, otherwise one Route column. */
+        Route route(String pairLabel, String[] fromNames, String[] toNames) {
+            int from = find(fromNames), to = find(toNames);
+            if (from >= 0 && to >= 0) return new Route(from, to, -1);
+            int route = find("route", "sector", "journey");
+            if (route >= 0) return new Route(-1, -1, route);
+            throw new IllegalArgumentException("The header needs a Route column or " + pairLabel + " columns.");
+        }
+
+        private static String normalise(String s) {
+            return NON_ALNUM.matcher(s.toLowerCase(Locale.ROOT)).replaceAll("");
+        }
+    }
+
+    /** Where a row's two endpoints come from. */
+    private static final class Route {
+        final int from, to, route;
+
+        Route(int from, int to, int route) {
+            this.from  = from;
+            this.to    = to;
+            this.route = route;
+        }
+
+        String[] split(String[] row) {
+            if (route < 0) return new String[]{ cell(row, from), cell(row, to) };
+            String[] ends = ROUTE_SPLIT.split(cell(row, route), 2);
+            if (ends.length < 2) throw new IllegalArgumentException("Route must look like \"DEL → BOM\": " + cell(row, route));
+            return new String[]{ ends[0].trim(), ends[1].trim() };
+        }
+    }
+
+    /**
+     * Tracks the file line of every parsed row, so the session's ValidationReport
+     * (which speaks in batch positions) can be reported in file lines, and keeps
+     * the first MAX_ERRORS cells that could not be parsed at all.
+     */
+    private static final class Errors {
+        private int[] lines = new int[1024];   // file line of each row in the batch
+        private int   rows;
+
+        private final List<String>  malformed   = new ArrayList<>();
+        private final List<Integer> malformedAt = new ArrayList<>();
+        private int                 malformedCount;
+
+        void parsed(int line) {
+            if (rows == lines.length) lines = Arrays.copyOf(lines, rows * 2);
+            lines[rows++] = line;
+        }
+
+        void malformed(int line, String message) {
+            if (malformedCount++ < MAX_ERRORS) {
+                malformed.add(message);
+                malformedAt.add(line);
+            }
+        }
+
+        /** Merges parse and rule errors in line order; both lists are already sorted. */
+        Report report(ValidationReport rules) {
+            List<String> messages = new ArrayList<>();
+            int m = 0, r = 0;
+            while (messages.size() < MAX_ERRORS && (m < malformed.size() || r < rules.size())) {
+                int ruleLine = r < rules.size() ? lines[rules.row(r)] : Integer.MAX_VALUE;
+                if (m < malformed.size() && malformedAt.get(m) < ruleLine) {
+                    messages.add("Line " + malformedAt.get(m) + ": " + malformed.get(m));
+                    m++;
+                } else {
+                    messages.add("Line " + ruleLine + ": " + rules.rule(r).message);
+                    r++;
+                }
+            }
+            return new Report(rules.validCount(), malformedCount + rules.size(), messages);
+        }
+    }
+
+    // -------------------------------------------------------------------------
+    // CSV Reader
+    // -------------------------------------------------------------------------
+
+    /**
+     * Minimal RFC 4180 reader: one record per call, quoted fields with doubled
+     * quotes and embedded delimiters or line breaks, CRLF or LF line ends.
+     */
+    private static final class CsvReader {
+        private final Reader in;
+        private final char[] buf = new char[8192];
+        private int  pos, len;
+        private char delimiter = ',';
+        private int  line = 1;        // physical line of the next character
+        private int  recordLine;      // physical line where the last record started
+        private final StringBuilder field = new StringBuilder();
+
+        CsvReader(Reader in) {
+            this.in = in;
+        }
+
+        /** Reads the header, detecting the delimiter from it. Null for an empty file. */
+        String[] readHeader() throws IOException {
+            if (fill() && buf[pos] == '\uFEFF') pos++; // UTF-8 byte order mark from Excel
+            delimiter = detectDelimiter();
+            return next();
+        }
+
+        /** Line number where the record most recently returned by next() began. */
+        int recordLine() {
+            return recordLine;
+        }
+
+        /** Counts candidate delimiters in the buffered part of the first line. */
+        private char detectDelimiter() {
+            int commas = 0, semis = 0, tabs = 0;
+            boolean quoted = false;
+            for (int i = pos; i < len && (quoted || (buf[i] != '\n' && buf[i] != '\r')); i++) {
+                char c = buf[i];
+                if (c == '"') quoted = !quoted;
+                else if (!quoted && c == ',')  commas++;
+                else if (!quoted && c == ';')  semis++;
+                else if (!quoted && c == '\t') tabs++;
+            }
+            if (tabs > commas && tabs >= semis) return '\t';
+            if (semis > commas)                 return ';';
+            return ',';
+        }
+
+        String[] next() throws IOException {
+            if (!fill()) return null;
+            recordLine = line;
+            List<String> fields = new ArrayList<>();
+            field.setLength(0);
+            boolean quoted = false, wasQuoted = false;
+            while (fill()) {
+                char c = buf[pos++];
+                if (quoted) {
+                    if (c == '"') {
+                        if (fill() && buf[pos] == '"') { field.append('"'); pos++; }
+                        else quoted = false;
+                    } else {
+                        if (c == '\n') line++;
+                        field.append(c);
+                    }
+                } else if (c == '"' && (field.length() == 0 || wasQuoted)) {
+                    quoted = wasQuoted = true;
+                } else if (c == delimiter) {
+                    fields.add(field.toString());
+                    field.setLength(0);
+                    wasQuoted = false;
+                } else if (c == '\n' || c == '\r') {
+                    if (c == '\r' && fill() && buf[pos] == '\n') pos++;
+                    line++;
+                    break;
+                } else {
+                    field.append(c);
+                }
+            }
+            fields.add(field.toString());
+            return fields.toArray(new String[0]);
+        }
+
+        private boolean fill() throws IOException {
+            if (pos < len) return true;
+            len = in.read(buf, 0, buf.length);
+            pos = 0;
+            if (len <= 0) {
+                len = 0;
+                return false;
+            }
+            return true;
+        }
+    }
+}
@@ -2,10 +2,10 @@ package bill;
 
 import javax.swing.*;
 import javax.swing.border.EmptyBorder;
-import javax.swing.table.DefaultTableModel;
 import java.awt.*;
+import java.io.File;
+import java.io.IOException;
 import java.math.BigDecimal;
-import java.util.List;
 
 /**
  * Step 2 — add, edit, and remove flight bookings.
@@ -21,11 +21,11 @@ public class FlightForm extends BasePanel {
 
     private JTextField txtPnr, txtSrc, txtDest, txtFare;
     private JSpinner   spinPax;
-    private DefaultTableModel tableModel;
+    private FlightTableModel tableModel;
     private JTable     table;
     private JButton    btnAdd;
 
-    private int editingIndex = -1; // -1 means "add mode"
+    private long editingId; // 0 means "add mode"
 
     public FlightForm(MainApp controller, BookingSession session) {
         super(controller, session);
@@ -78,14 +78,11 @@ public class FlightForm extends BasePanel {
         JPanel rightPanel = new JPanel(new BorderLayout(0, 8));
         rightPanel.setOpaque(false);
 
-        String[] cols = {"PNR", "Route", "Pax", "Fare", "Del"};
-        tableModel = new DefaultTableModel(cols, 0) {
-            @Override public boolean isCellEditable(int r, int c) { return false; }
-        };
+        tableModel = new FlightTableModel(session);
         table = new JTable(tableModel);
         styleTable(table);
-        table.getColumnModel().getColumn(4).setMaxWidth(55);
-        table.getColumnModel().getColumn(4).setMinWidth(55);
+        table.getColumnModel().getColumn(FlightTableModel.DELETE_COLUMN).setMaxWidth(55);
+        table.getColumnModel().getColumn(FlightTableModel.DELETE_COLUMN).setMinWidth(55);
 
         // Row click → populate form for editing
         table.getSelectionModel().addListSelectionListener(e -> {
@@ -101,16 +98,22 @@ public class FlightForm extends BasePanel {
             @Override public void mouseClicked(java.awt.event.MouseEvent e) {
                 int row = table.rowAtPoint(e.getPoint());
                 int col = table.columnAtPoint(e.getPoint());
-                if (col == 4 && row >= 0) {
-                    if (editingIndex == row) cancelEdit();
+                if (col == FlightTableModel.DELETE_COLUMN && row >= 0) {
+                    if (editingId == session.getFlight(row).id) cancelEdit();
                     session.removeFlight(row);
-                    refreshTable();
                 }
             }
         });
 
         rightPanel.add(scroll, BorderLayout.CENTER);
 
+        JPanel tableBar = new JPanel(new FlowLayout(FlowLayout.RIGHT, 0, 0));
+        tableBar.setOpaque(false);
+        JButton btnImport = createStyledButton("Import CSV…", PRIMARY_COLOR, false);
+        btnImport.addActionListener(e -> importCsv());
+        tableBar.add(btnImport);
+        rightPanel.add(tableBar, BorderLayout.NORTH);
+
         content.add(leftCard);
         content.add(rightPanel);
         add(content, BorderLayout.CENTER);
@@ -129,8 +132,6 @@ public class FlightForm extends BasePanel {
         bottom.add(btnBack);
         bottom.add(btnNext);
         add(bottom, BorderLayout.SOUTH);
-
-        refreshTable();
     }
 
     // -------------------------------------------------------------------------
@@ -158,8 +159,8 @@ public class FlightForm extends BasePanel {
         }
 
         try {
-            if (editingIndex >= 0) {
-                session.updateFlight(editingIndex, pnr, src, dest, fare, pax);
+            if (editingId != 0) {
+                session.replaceFlight(editingId, pnr, src, dest, fare, pax);
             } else {
                 session.addFlight(pnr, src, dest, fare, pax);
             }
@@ -169,57 +170,48 @@ public class FlightForm extends BasePanel {
         }
 
         clearForm();
-        refreshTable();
     }
 
     private void populateFormFromRow(int row) {
         if (row < 0) return;
-        List<BookingSession.FlightBookingData> flights = session.getFlights();
-        if (row >= flights.size()) return;
+        if (row >= session.getTotalFlights()) return;
 
-        BookingSession.FlightBookingData f = flights.get(row);
+        BookingSession.FlightBookingData f = session.getFlight(row);
         txtPnr.setText(f.pnr);
         txtSrc.setText(f.source);
         txtDest.setText(f.dest);
         txtFare.setText(f.fare.toPlainString());
         spinPax.setValue(f.passengers);
 
-        editingIndex = row;
+        editingId = f.id;
         btnAdd.setText("✔ Update Flight");
         btnAdd.setBackground(BasePanel.PRIMARY_COLOR);
     }
 
     private void cancelEdit() {
-        editingIndex = -1;
+        editingId = 0;
     }
 
     private void clearForm() {
         txtPnr.setText(""); txtSrc.setText(""); txtDest.setText(""); txtFare.setText("");
         spinPax.setValue(1);
-        editingIndex = -1;
+        editingId = 0;
         btnAdd.setText("+ Add Flight");
         table.clearSelection();
     }
 
+    private void importCsv() {
+        File file = chooseCsvFile();
+        if (file == null) return;
+        try {
+            showImportReport(CsvImporter.importFlights(file, session), "flights");
+        } catch (IllegalArgumentException | IOException ex) {
+            showError("Could not import " + file.getName() + ":\n" + ex.getMessage());
+        }
+    }
+
     private void advance() {
         // Flights are optional — car bookings alone are also valid
         controller.showScreen(MainApp.CAR_PANEL);
     }
-
-    // -------------------------------------------------------------------------
-    // Table Rendering
-    // -------------------------------------------------------------------------
-
-    private void refreshTable() {
-        tableModel.setRowCount(0);
-        for (BookingSession.FlightBookingData f : session.getFlights()) {
-            tableModel.addRow(new Object[]{
-                f.pnr,
-                f.source + " → " + f.dest,
-                f.passengers,
-                BasePanel.CURRENCY + " " + f.fare.toPlainString(),
-                "🗑 Del"
-            });
-        }
-    }
 }
@@ -0,0 +1,79 @@
+package bill;
+
+import javax.swing.table.AbstractTableModel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Table model for FlightForm that reads straight from the BookingSession.
+ *
+ * Listens for session events and fires row events for just the rows that
+ * changed, so editing one line of a large group booking leaves every other row
+ * alone. Formatted cells are cached per row and built the first time a row is
+ * painted; an update or removal drops only that row's entry.
+ *
+ * The session must be changed on the EDT while this model is installed.
+ */
+class FlightTableModel extends AbstractTableModel implements SessionListener {
+
+    static final int DELETE_COLUMN = 4;
+
+    private static final String[] COLUMNS = {"PNR", "Route", "Pax", "Fare", "Del"};
+
+    private final BookingSession session;
+    private final List<Object[]> cells = new ArrayList<>(); // null until the row is first read
+
+    FlightTableModel(BookingSession session) {
+        this.session = session;
+        cells.addAll(Collections.nCopies(session.getTotalFlights(), null));
+        session.addSessionListener(this);
+    }
+
+    @Override public int     getRowCount()                   { return cells.size(); }
+    @Override public int     getColumnCount()                { return COLUMNS.length; }
+    @Override public String  getColumnName(int col)          { return COLUMNS[col]; }
+    @Override public boolean isCellEditable(int row, int col) { return false; }
+
+    @Override
+    public Object getValueAt(int row, int col) {
+        Object[] r = cells.get(row);
+        if (r == null) {
+            BookingSession.FlightBookingData f = session.getFlight(row);
+            r = new Object[]{
+                f.pnr,
+                f.source + " → " + f.dest,
+                f.passengers,
+                BasePanel.CURRENCY + " " + f.fare.toPlainString(),
+                "🗑 Del"
+            };
+            cells.set(row, r);
+        }
+        return r[col];
+    }
+
+    @Override
+    public void sessionChanged(SessionEvent e) {
+        switch (e.type) {
+            case FLIGHT_ADDED:
+                cells.addAll(e.index, Collections.nCopies(e.count, null));
+                fireTableRowsInserted(e.index, e.lastIndex());
+                break;
+            case FLIGHT_UPDATED:
+                cells.set(e.index, null);
+                fireTableRowsUpdated(e.index, e.index);
+                break;
+            case FLIGHT_REMOVED:
+                cells.remove(e.index);
+                fireTableRowsDeleted(e.index, e.index);
+                break;
+            case RESET:
+                cells.clear();
+                cells.addAll(Collections.nCopies(session.getTotalFlights(), null));
+                fireTableDataChanged();
+                break;
+            default:
+                break;
+        }
+    }
+}
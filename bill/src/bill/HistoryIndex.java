@@ -0,0 +1,218 @@
+package bill;
+
+import java.io.*;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compact on-disk summary index for a folder of saved sessions (.rss).
+ *
+ * The History screen only shows invoice number, client, date and total, yet
+ * getting those used to mean fully deserializing every session file. This index
+ * keeps those four fields per file in a small binary file inside the folder
+ * (.rss-index), keyed by file name + size + last-modified time. A scan only
+ * re-reads sessions that are new or have changed since the index was written,
+ * so opening History costs O(changed files) rather than O(all files).
+ *
+ * The index is purely a cache: a missing, corrupt or unwritable index file just
+ * means the sessions are read again.
+ */
+public class HistoryIndex {
+
+    public static final String FILE_NAME = ".rss-index";
+
+    private static final int MAGIC   = 0x52535349; // "RSSI"
+    private static final int VERSION = 3;
+
+    /** Summary of one session file. Unreadable files are remembered too, so they are not retried until they change. */
+    public static class Entry {
+        public final String     fileName;
+        public final long       size;
+        public final long       modified;
+        public final boolean    readable;
+        public final String     invoiceNumber;
+        public final String     customerName;
+        public final Date       bookingDate;
+        public final Money      total;
+
+        Entry(String fileName, long size, long modified, boolean readable,
+              String invoiceNumber, String customerName, Date bookingDate, Money total) {
+            this.fileName      = fileName;
+            this.size          = size;
+            this.modified      = modified;
+            this.readable      = readable;
+            this.invoiceNumber = invoiceNumber;
+            this.customerName  = customerName;
+            this.bookingDate   = bookingDate;
+            this.total         = total;
+        }
+
+        boolean matches(File f) {
+            return size == f.length() && modified == f.lastModified();
+        }
+    }
+
+    private final File               dir;
+    private final Map<String, Entry> entries = new HashMap<>();
+    private boolean                  dirty;
+
+    private HistoryIndex(File dir) {
+        this.dir = dir;
+    }
+
+    /** Opens the index for a folder, starting empty if there is no usable index file yet. */
+    public static HistoryIndex open(File dir) {
+        HistoryIndex index = new HistoryIndex(dir);
+        index.load();
+        return index;
+    }
+
+    /** Lists the folder's session files in name order. */
+    public File[] listSessionFiles() {
+        File[] files = dir.listFiles((d, name) -> name.endsWith(".rss"));
+        if (files == null) return new File[0];
+        Arrays.sort(files);
+        return files;
+    }
+
+    /** Returns the cached entry for a file if it is still current, otherwise null. */
+    public synchronized Entry lookup(File f) {
+        Entry e = entries.get(f.getName());
+        return e != null && e.matches(f) ? e : null;
+    }
+
+    /** Reads a session file's summary and records it in the index. */
+    public Entry refresh(File f) {
+        long   size     = f.length();
+        long   modified = f.lastModified();
+        Entry  entry;
+        try {
+            BookingSession.Summary s = BookingSession.readSummary(f);
+            if (s.bookingDate == null) throw new InvalidObjectException("Session has no booking date");
+            entry = new Entry(f.getName(), size, modified, true,
+                              nz(s.invoiceNumber), nz(s.customerName), s.bookingDate, s.totalAmount);
+        } catch (Exception ex) {
+            // Corrupt or incompatible file
+            entry = new Entry(f.getName(), size, modified, false, null, null, null, null);
+            // Interrupted mid-read (scan cancelled): don't remember the file as corrupt
+            if (Thread.currentThread().isInterrupted()) return entry;
+        }
+        synchronized (this) {
+            entries.put(entry.fileName, entry);
+            dirty = true;
+        }
+        return entry;
+    }
+
+    /** Cached entry if current, otherwise a fresh read. */
+    public Entry get(File f) {
+        Entry e = lookup(f);
+        return e != null ? e : refresh(f);
+    }
+
+    /**
+     * Brings the whole index up to date with the folder and saves it.
+     * Returns the readable sessions in file-name order.
+     */
+    public List<Entry> scan() {
+        File[]      files  = listSessionFiles();
+        List<Entry> result = new ArrayList<>(files.length);
+        for (File f : files) {
+            Entry e = get(f);
+            if (e.readable) result.add(e);
+        }
+        retainOnly(files);
+        save();
+        return result;
+    }
+
+    /** Drops entries for files that no longer exist. Call once every present file has been looked up. */
+    public synchronized void retainOnly(File[] present) {
+        if (entries.size() == present.length) return;
+        Map<String, Entry> kept = new HashMap<>();
+        for (File f : present) {
+            Entry e = entries.get(f.getName());
+            if (e != null) kept.put(f.getName(), e);
+        }
+        entries.clear();
+        entries.putAll(kept);
+        dirty = true;
+    }
+
+    private static String nz(String s) { return s == null ? "" : s; }
+
+    // -------------------------------------------------------------------------
+    // Persistence
+    // -------------------------------------------------------------------------
+
+    private void load() {
+        File f = new File(dir, FILE_NAME);
+        if (!f.isFile()) return;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(f)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) return;
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                String  name     = in.readUTF();
+                long    size     = in.readLong();
+                long    modified = in.readLong();
+                boolean readable = in.readBoolean();
+                Entry e = readable
+                    ? new Entry(name, size, modified, true, in.readUTF(), in.readUTF(),
+                                new Date(in.readLong()), readMoney(in))
+                    : new Entry(name, size, modified, false, null, null, null, null);
+                entries.put(name, e);
+            }
+        } catch (Exception ignored) {
+            // Corrupt index: start over, every file will be re-read once
+            entries.clear();
+        }
+    }
+
+    private static Money readMoney(DataInputStream in) throws IOException {
+        int scale = in.readByte();
+        return Money.of(in.readLong(), scale);
+    }
+
+    /** Writes the index if anything changed. Failures (e.g. a read-only share) are ignored. */
+    public synchronized void save() {
+        if (!dirty) return;
+        File target = new File(dir, FILE_NAME);
+        File tmp    = new File(dir, FILE_NAME + ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeInt(entries.size());
+                for (Entry e : entries.values()) {
+                    out.writeUTF(e.fileName);
+                    out.writeLong(e.size);
+                    out.writeLong(e.modified);
+                    out.writeBoolean(e.readable);
+                    if (e.readable) {
+                        out.writeUTF(e.invoiceNumber);
+                        out.writeUTF(e.customerName);
+                        out.writeLong(e.bookingDate.getTime());
+                        out.writeByte(e.total.scale());
+                        out.writeLong(e.total.unscaledValue());
+                    }
+                }
+            }
+            try {
+                Files.move(tmp.toPath(), target.toPath(),
+                           StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException ex) {
+                Files.move(tmp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+            dirty = false;
+        } catch (IOException ignored) {
+            tmp.delete();
+        }
+    }
+}
@@ -8,6 +8,10 @@ import java.io.File;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /**
  * History screen — lists previously saved session (.rss) files from the most
@@ -15,13 +19,23 @@ import java.util.List;
  *
  * Since the app stores sessions as serialized files, history is directory-based:
  * the user picks a folder and all .rss files within are listed.
+ *
+ * The folder is scanned off the EDT: indexed summaries appear at once, then new or
+ * changed files are read on a small pool and rows are added as they arrive, with a
+ * progress bar and a Cancel button.
  */
 public class HistoryPanel extends BasePanel {
 
+    // Parallel reads help most on slow network shares
+    private static final int READ_THREADS = 4;
+
     private DefaultTableModel tableModel;
     private JTable table;
     private final List<File> sessionFiles = new ArrayList<>();
     private JLabel lblDir;
+    private JProgressBar progressBar;
+    private JButton btnCancel;
+    private SessionLoader loader;
 
     public HistoryPanel(MainApp controller, BookingSession session) {
         super(controller, session);
@@ -47,8 +61,19 @@ public class HistoryPanel extends BasePanel {
         JButton btnBack = createStyledButton("← Back", TEXT_MUTED, false);
         btnBack.addActionListener(e -> controller.showScreen(MainApp.CUSTOMER_PANEL));
 
+        progressBar = new JProgressBar(0, 100);
+        progressBar.setStringPainted(true);
+        progressBar.setPreferredSize(new Dimension(160, 22));
+        progressBar.setVisible(false);
+
+        btnCancel = createStyledButton("Cancel", DANGER_COLOR, false);
+        btnCancel.addActionListener(e -> { if (loader != null) loader.cancel(true); });
+        btnCancel.setVisible(false);
+
         toolbar.add(btnBrowse);
         toolbar.add(lblDir);
+        toolbar.add(progressBar);
+        toolbar.add(btnCancel);
         toolbar.add(Box.createHorizontalGlue());
         toolbar.add(btnBack);
         add(toolbar, BorderLayout.NORTH);
@@ -108,31 +133,103 @@ public class HistoryPanel extends BasePanel {
     }
 
     private void loadSessionFiles(File dir) {
+        if (loader != null) loader.cancel(true);
         sessionFiles.clear();
         tableModel.setRowCount(0);
 
-        File[] files = dir.listFiles((d, name) -> name.endsWith(".rss"));
-        if (files == null || files.length == 0) {
-            JOptionPane.showMessageDialog(this,
-                "No saved sessions (.rss files) found in this folder.",
-                "No Sessions", JOptionPane.INFORMATION_MESSAGE);
-            return;
-        }
+        loader = new SessionLoader(dir);
+        loader.addPropertyChangeListener(e -> {
+            if ("progress".equals(e.getPropertyName())) progressBar.setValue((Integer) e.getNewValue());
+        });
+        progressBar.setValue(0);
+        progressBar.setVisible(true);
+        btnCancel.setVisible(true);
+        revalidate();
+        loader.execute();
+    }
+
+    /**
+     * Background scan of one folder. Summaries still current in the folder's index
+     * are published first; the remaining files are read on a small pool and
+     * published as each completes. Swing coalesces publish() calls, so rows reach
+     * the table model in batches. Whatever was read is saved to the index even if
+     * the scan is cancelled.
+     */
+    private class SessionLoader extends SwingWorker<Void, HistoryIndex.Entry> {
+        private final File dir;
+
+        SessionLoader(File dir) { this.dir = dir; }
+
+        @Override
+        protected Void doInBackground() throws Exception {
+            HistoryIndex index = HistoryIndex.open(dir);
+            File[]       files = index.listSessionFiles();
+            List<File>   stale = new ArrayList<>();
+            int          done  = 0;
+
+            for (File f : files) {
+                if (isCancelled()) return null;
+                HistoryIndex.Entry e = index.lookup(f);
+                if (e == null) { stale.add(f); continue; }
+                if (e.readable) publish(e);
+                setProgress(++done * 100 / files.length);
+            }
 
-        SimpleDateFormat sdf = new SimpleDateFormat("dd-MM-yyyy");
-        for (File f : files) {
+            ExecutorService pool = Executors.newFixedThreadPool(READ_THREADS);
             try {
-                BookingSession s = BookingSession.loadFrom(f);
-                sessionFiles.add(f);
+                CompletionService<HistoryIndex.Entry> reads = new ExecutorCompletionService<>(pool);
+                for (File f : stale) reads.submit(() -> index.refresh(f));
+                for (int i = 0; i < stale.size() && !isCancelled(); i++) {
+                    HistoryIndex.Entry e = reads.take().get();
+                    if (e.readable) publish(e);
+                    setProgress(++done * 100 / files.length);
+                }
+                if (!isCancelled()) index.retainOnly(files);
+            } finally {
+                pool.shutdownNow();
+                index.save();
+            }
+            return null;
+        }
+
+        @Override
+        protected void process(List<HistoryIndex.Entry> chunk) {
+            if (loader != this) return; // superseded by a newer scan
+            SimpleDateFormat sdf = new SimpleDateFormat("dd-MM-yyyy");
+            for (HistoryIndex.Entry e : chunk) {
+                sessionFiles.add(new File(dir, e.fileName));
                 tableModel.addRow(new Object[]{
-                    s.getInvoiceNumber(),
-                    s.getCustomerName(),
-                    sdf.format(s.getBookingDate()),
-                    CURRENCY + " " + s.getTotalAmount().toPlainString(),
-                    f.getName()
+                    e.invoiceNumber,
+                    e.customerName,
+                    sdf.format(e.bookingDate),
+                    CURRENCY + " " + e.total.toPlainString(),
+                    e.fileName
                 });
-            } catch (Exception ignored) {
-                // Skip corrupt or incompatible files
+            }
+        }
+
+        @Override
+        protected void done() {
+            if (loader != this) return;
+            loader = null;
+            progressBar.setVisible(false);
+            btnCancel.setVisible(false);
+            revalidate();
+
+            if (isCancelled()) {
+                lblDir.setText(dir.getAbsolutePath() + "  (scan cancelled, " + sessionFiles.size() + " shown)");
+                return;
+            }
+            try {
+                get();
+            } catch (Exception ex) {
+                showError("Could not read folder: " + ex.getMessage());
+                return;
+            }
+            if (sessionFiles.isEmpty()) {
+                JOptionPane.showMessageDialog(HistoryPanel.this,
+                    "No saved sessions (.rss files) found in this folder.",
+                    "No Sessions", JOptionPane.INFORMATION_MESSAGE);
             }
         }
     }
@@ -145,22 +242,10 @@ public class HistoryPanel extends BasePanel {
         }
         File file = sessionFiles.get(row);
         try {
-            BookingSession loaded = BookingSession.loadFrom(file);
-            // Copy into shared session
-            session.reset();
-            session.setCustomerDetails(
-                loaded.getCustomerName(), loaded.getContactNumber(),
-                loaded.getAddress(), loaded.getInvoiceNumber(), loaded.getBookingDate());
-            session.setCompanyDetails(
-                loaded.getCompanyName(), loaded.getCompanyTagline(),
-                loaded.getCompanyEmail(), loaded.getCompanyPhone());
-            session.setGstRate(loaded.getGstRatePercent());
-            for (BookingSession.FlightBookingData f : loaded.getFlights())
-                session.addFlight(f.pnr, f.source, f.dest, f.fare, f.passengers);
-            for (BookingSession.CarBookingData c : loaded.getCars())
-                session.addCar(c.carNo, c.source, c.dest, c.fare);
-
+            BookingSession loaded  = BookingSession.loadFrom(file);
+            String         skipped = controller.loadIntoSession(loaded);
             controller.showScreen(MainApp.BILL_PANEL);
+            if (skipped != null) showWarning(skipped);
         } catch (Exception ex) {
             showError("Could not open session: " + ex.getMessage());
         }
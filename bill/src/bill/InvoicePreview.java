@@ -0,0 +1,419 @@
+package bill;
+
+import javax.swing.text.BadLocationException;
+import javax.swing.text.Document;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.IntFunction;
+import java.util.function.Supplier;
+
+/**
+ * The plain-text invoice shown in BillView, kept up to date incrementally.
+ *
+ * The text is split into sections that depend on different parts of the
+ * session. Session events mark only the affected sections dirty, and
+ * {@link #applyTo} swaps just those sections in the document. The flight and
+ * car sections go further: each booking line remembers the text it has in the
+ * document, events mark lines added, changed or removed by index and count, and
+ * applyTo edits only those lines' ranges plus the subtotal line, so changing
+ * one line of a large booking is one small remove and insert. If the session
+ * version has not moved since the last apply, the document is left alone
+ * entirely.
+ *
+ * Columns are padded by hand rather than with String.format; the output is the
+ * same as the format strings noted next to each helper.
+ *
+ * EDT only, like the rest of the UI.
+ */
+class InvoicePreview implements SessionListener {
+
+    private static final int WIDTH = 70;
+    private static final String LINE  = "-".repeat(WIDTH) + "\n";
+    private static final String LINE2 = "=".repeat(WIDTH) + "\n";
+
+    // Section order in the document.
+    private static final int HEADER = 0, META = 1, FLIGHTS = 2, CARS = 3, TOTALS = 4, FOOTER = 5;
+    private static final int SECTIONS = 6;
+
+    private final BookingSession   session;
+    private final SimpleDateFormat dateFormat = new SimpleDateFormat("dd-MM-yyyy");
+
+    private final String[]  text  = new String[SECTIONS];
+    private final boolean[] dirty = new boolean[SECTIONS];
+
+    private final LineSection flights;
+    private final LineSection cars;
+
+    private Document document;
+    private long     appliedVersion = -1;
+
+    InvoicePreview(BookingSession session) {
+        this.session = session;
+        this.flights = new LineSection(" FLIGHT BOOKINGS\n", "Flight subtotal :", this::flightLine, session::getFlightTotal);
+        this.cars    = new LineSection(" CAR RENTALS\n",     "Car subtotal :",    this::carLine,    session::getCarTotal);
+        Arrays.fill(text, "");
+        resetLines();
+        Arrays.fill(dirty, true);
+        session.addSessionListener(this);
+    }
+
+    /**
+     * Brings doc up to date with the session. Returns false, without touching the
+     * document, if nothing changed since the last call with the same document.
+     */
+    boolean applyTo(Document doc) {
+        if (doc != document) {
+            document = doc;
+            Arrays.fill(dirty, true);
+            replace(doc, 0, doc.getLength(), "");
+            Arrays.fill(text, "");
+            flights.invalidate();
+            cars.invalidate();
+        } else if (appliedVersion == session.getVersion()) {
+            return false;
+        }
+
+        int offset = 0;
+        for (int s = 0; s < SECTIONS; s++) {
+            if (s == FLIGHTS || s == CARS) {
+                offset += (s == FLIGHTS ? flights : cars).applyTo(doc, offset);
+                continue;
+            }
+            if (dirty[s]) {
+                String fresh = render(s);
+                if (!fresh.equals(text[s])) {
+                    replace(doc, offset, text[s].length(), fresh);
+                    text[s] = fresh;
+                }
+                dirty[s] = false;
+            }
+            offset += text[s].length();
+        }
+        appliedVersion = session.getVersion();
+        return true;
+    }
+
+    @Override
+    public void sessionChanged(SessionEvent e) {
+        switch (e.type) {
+            case FLIGHT_ADDED:   flights.added(e.index, e.count);   break;
+            case FLIGHT_UPDATED: flights.updated(e.index, e.count); break;
+            case FLIGHT_REMOVED: flights.removed(e.index, e.count); break;
+            case CAR_ADDED:      cars.added(e.index, e.count);      break;
+            case CAR_UPDATED:    cars.updated(e.index, e.count);    break;
+            case CAR_REMOVED:    cars.removed(e.index, e.count);    break;
+            case RESET:          resetLines();                      break;
+            default: break;
+        }
+
+        switch (e.type) {
+            case CUSTOMER_CHANGED:
+                dirty[META] = true;
+                break;
+            case COMPANY_CHANGED:
+                dirty[HEADER] = dirty[FOOTER] = true;
+                break;
+            case GST_RATE_CHANGED:
+                dirty[TOTALS] = true;
+                break;
+            case RESET:
+                Arrays.fill(dirty, true);
+                break;
+            default:
+                if (e.isFlightChange() || e.isCarChange()) dirty[TOTALS] = true;
+                break;
+        }
+    }
+
+    private void resetLines() {
+        flights.reset(session.getTotalFlights());
+        cars.reset(session.getTotalCars());
+    }
+
+    // -------------------------------------------------------------------------
+    // Sections
+    // -------------------------------------------------------------------------
+
+    private String render(int section) {
+        StringBuilder sb = new StringBuilder();
+        switch (section) {
+            case HEADER:  renderHeader(sb);  break;
+            case META:    renderMeta(sb);    break;
+            case TOTALS:  renderTotals(sb);  break;
+            case FOOTER:  renderFooter(sb);  break;
+            default: throw new IllegalArgumentException("section " + section);
+        }
+        return sb.toString();
+    }
+
+    private void renderHeader(StringBuilder sb) {
+        sb.append(centred(session.getCompanyName(), WIDTH)).append('\n');
+        sb.append(centred(session.getCompanyTagline(), WIDTH)).append('\n');
+        sb.append(centred(session.getCompanyPhone() + "  |  " + session.getCompanyEmail(), WIDTH)).append('\n');
+        sb.append(LINE2);
+    }
+
+    private void renderMeta(StringBuilder sb) {
+        sb.append(" Invoice No : ");
+        padRight(sb, session.getInvoiceNumber(), 30);
+        sb.append(" Date : ").append(dateFormat.format(session.getBookingDate())).append('\n');
+        sb.append(" Client     : ");
+        padRight(sb, truncate(session.getCustomerName(), 30), 30);
+        sb.append('\n');
+        if (!session.getContactNumber().isEmpty())
+            sb.append(" Contact    : ").append(session.getContactNumber()).append('\n');
+        if (!session.getAddress().isEmpty())
+            sb.append(" Address    : ").append(session.getAddress()).append('\n');
+        sb.append(LINE);
+
+        // Column header
+        row(sb, "REF", "ROUTE", "PAX", "AMOUNT");
+        sb.append(LINE);
+    }
+
+    private String flightLine(int i) {
+        BookingSession.FlightBookingData f = session.getFlight(i);
+        StringBuilder sb = new StringBuilder(WIDTH);
+        row(sb, truncate(f.pnr, 12), truncate(f.source + " → " + f.dest, 25),
+            Integer.toString(f.passengers), amount(f.fare));
+        return sb.toString();
+    }
+
+    private String carLine(int i) {
+        BookingSession.CarBookingData c = session.getCar(i);
+        StringBuilder sb = new StringBuilder(WIDTH);
+        row(sb, truncate(c.carNo, 12), truncate(c.source + " → " + c.dest, 25), "", amount(c.fare));
+        return sb.toString();
+    }
+
+    private void renderTotals(StringBuilder sb) {
+        sb.append(LINE);
+        total(sb, "Subtotal :", session.getSubtotal());
+        total(sb, "GST @ " + session.getGstRatePercent().toPlainString() + "% :", session.getGstAmount());
+        sb.append(LINE2);
+        total(sb, "GRAND TOTAL :", session.getTotalAmount());
+        sb.append(LINE2);
+    }
+
+    private void renderFooter(StringBuilder sb) {
+        sb.append("\n Payment Terms: Please remit within 15 days of invoice date.\n");
+        sb.append(" Thank you for choosing ").append(session.getCompanyName()).append("!\n");
+        sb.append('\n').append(centred("* This is a computer-generated invoice *", WIDTH)).append('\n');
+    }
+
+    // -------------------------------------------------------------------------
+    // Booking sections
+    // -------------------------------------------------------------------------
+
+    /**
+     * The flight or car section: a title, one line per booking and the subtotal,
+     * or nothing at all while there are no bookings.
+     *
+     * lines mirrors the session's list; shown holds the same Line objects in the
+     * order they were last written to the document, including lines removed
+     * since. applyTo walks the two together and turns each run of removed, new and
+     * changed lines into one remove and insert, so unchanged lines are never
+     * touched. Moves arrive as a removal and an addition, so surviving lines keep
+     * their relative order and the walk needs no diffing.
+     */
+    private static final class LineSection {
+
+        private static final class Line {
+            String  text;     // as in the document; null until first written
+            boolean stale;    // booking changed since text was formatted
+            boolean removed;
+        }
+
+        private final String              title;
+        private final String              totalLabel;
+        private final IntFunction<String> format;
+        private final Supplier<Money>     total;
+
+        private List<Line> lines   = new ArrayList<>();
+        private List<Line> shown   = new ArrayList<>();
+        private String     tail    = "";   // subtotal and blank line, as in the document
+        private int        length;         // characters the section occupies in the document
+        private boolean    rebuild = true; // rewrite the whole section on the next apply
+        private boolean    changed;        // some line was added, changed or removed
+
+        LineSection(String title, String totalLabel, IntFunction<String> format, Supplier<Money> total) {
+            this.title      = title;
+            this.totalLabel = totalLabel;
+            this.format     = format;
+            this.total      = total;
+        }
+
+        void added(int index, int count) {
+            List<Line> fresh = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) fresh.add(new Line());
+            lines.addAll(index, fresh);
+            changed = true;
+        }
+
+        void updated(int index, int count) {
+            for (int i = index; i < index + count; i++) lines.get(i).stale = true;
+            changed = true;
+        }
+
+        void removed(int index, int count) {
+            for (int i = 0; i < count; i++) lines.remove(index).removed = true;
+            changed = true;
+        }
+
+        void reset(int size) {
+            lines = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) lines.add(new Line());
+            rebuild = true;
+        }
+
+        /** The document was replaced: the section is no longer in it. */
+        void invalidate() {
+            length  = 0;
+            rebuild = true;
+        }
+
+        /** Brings the section at offset up to date and returns its length. */
+        int applyTo(Document doc, int offset) {
+            if (rebuild || lines.isEmpty() || shown.isEmpty()) {
+                rewrite(doc, offset);
+            } else if (changed) {
+                int    pos   = patchLines(doc, offset + title.length());
+                String fresh = renderTail();
+                if (!fresh.equals(tail)) {
+                    replace(doc, pos, tail.length(), fresh);
+                    tail = fresh;
+                }
+                length = pos + tail.length() - offset;
+            } else {
+                return length;
+            }
+            shown   = new ArrayList<>(lines);
+            rebuild = changed = false;
+            return length;
+        }
+
+        private void rewrite(Document doc, int offset) {
+            StringBuilder sb = new StringBuilder();
+            tail = "";
+            if (!lines.isEmpty()) {
+                sb.append(title);
+                for (int i = 0; i < lines.size(); i++) sb.append(format(i));
+                tail = renderTail();
+                sb.append(tail);
+            }
+            replace(doc, offset, length, sb.toString());
+            length = sb.length();
+        }
+
+        /** Applies line changes from pos on; returns the position just after the last line. */
+        private int patchLines(Document doc, int pos) {
+            StringBuilder insert = new StringBuilder();
+            int           remove = 0;  // pending: replace remove chars at pos with insert
+            int           j      = 0;  // next Line in shown
+            for (int i = 0; i < lines.size(); i++) {
+                while (j < shown.size() && shown.get(j).removed) remove += shown.get(j++).text.length();
+                Line l = lines.get(i);
+                if (l.text == null) {
+                    insert.append(format(i));
+                    continue;
+                }
+                j++; // l is shown.get(j): surviving lines keep their order
+                if (l.stale) {
+                    String old = l.text;
+                    if (!format(i).equals(old)) {
+                        remove += old.length();
+                        insert.append(l.text);
+                        continue;
+                    }
+                }
+                pos = flush(doc, pos, remove, insert) + l.text.length();
+                remove = 0;
+            }
+            while (j < shown.size()) remove += shown.get(j++).text.length();
+            return flush(doc, pos, remove, insert);
+        }
+
+        private static int flush(Document doc, int pos, int remove, StringBuilder insert) {
+            if (remove > 0 || insert.length() > 0) replace(doc, pos, remove, insert.toString());
+            pos += insert.length();
+            insert.setLength(0);
+            return pos;
+        }
+
+        /** Formats line i and records it as the text the document will hold. */
+        private String format(int i) {
+            Line l  = lines.get(i);
+            l.text  = format.apply(i);
+            l.stale = false;
+            return l.text;
+        }
+
+        private String renderTail() {
+            StringBuilder sb = new StringBuilder();
+            total(sb, totalLabel, total.get());
+            return sb.append('\n').toString();
+        }
+    }
+
+    // -------------------------------------------------------------------------
+    // Column formatters
+    // -------------------------------------------------------------------------
+
+    /** " %-12s  %-25s  %6s  %12s\n" */
+    private static void row(StringBuilder sb, String ref, String route, String pax, String amount) {
+        sb.append(' ');
+        padRight(sb, ref, 12);
+        sb.append("  ");
+        padRight(sb, route, 25);
+        sb.append("  ");
+        padLeft(sb, pax, 6);
+        sb.append("  ");
+        padLeft(sb, amount, 12);
+        sb.append('\n');
+    }
+
+    /** " %47s  %12s\n" */
+    private static void total(StringBuilder sb, String label, Money value) {
+        sb.append(' ');
+        padLeft(sb, label, 47);
+        sb.append("  ");
+        padLeft(sb, amount(value), 12);
+        sb.append('\n');
+    }
+
+    private static String amount(Money m) {
+        return BasePanel.CURRENCY + " " + m.toPlainString();
+    }
+
+    private static void padRight(StringBuilder sb, String s, int width) {
+        sb.append(s);
+        for (int i = s.length(); i < width; i++) sb.append(' ');
+    }
+
+    private static void padLeft(StringBuilder sb, String s, int width) {
+        for (int i = s.length(); i < width; i++) sb.append(' ');
+        sb.append(s);
+    }
+
+    private static String centred(String text, int width) {
+        if (text.length() >= width) return text;
+        int pad = (width - text.length()) / 2;
+        return " ".repeat(pad) + text;
+    }
+
+    private static String truncate(String text, int max) {
+        if (text == null) return "";
+        return text.length() <= max ? text : text.substring(0, max - 1) + "…";
+    }
+
+    private static void replace(Document doc, int offset, int length, String fresh) {
+        try {
+            if (length > 0) doc.remove(offset, length);
+            if (!fresh.isEmpty()) doc.insertString(offset, fresh, null);
+        } catch (BadLocationException e) {
+            throw new IllegalStateException("Preview document out of step with its sections", e);
+        }
+    }
+}
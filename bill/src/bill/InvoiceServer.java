@@ -0,0 +1,937 @@
+package bill;
+
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Pattern;
+
+/**
+ * Headless HTTP service for building invoices from other programs, on the JDK's
+ * built-in HTTP server. No Swing is loaded.
+ *
+ * Usage:
+ *   java -cp ... bill.InvoiceServer [--port 8080] [--bind 127.0.0.1] [--renders N] [--queue N]
+ *                                   [--max-sessions N] [--idle-minutes N] [--settings FILE] [--no-cache]
+ *   java -jar RidhiSidhi-Tours.jar --serve [same options]
+ *
+ * Endpoints (form bodies are application/x-www-form-urlencoded):
+ *
+ *   POST   /sessions                          new session; optional customer form → 201 + Location
+ *   GET    /sessions/{id}                     the session as an .rss file (SessionFormat)
+ *   PUT    /sessions/{id}                     create the session from an .rss file; ?overwrite=true to replace
+ *   DELETE /sessions/{id}
+ *   POST   /sessions/{id}/customer            form: name, contact, address, invoice, date (yyyy-MM-dd), gst
+ *   POST   /sessions/{id}/flights             CSV body, as for CsvImporter → import report
+ *   GET    /sessions/{id}/flights             lines as CSV, with the line IDs
+ *   PUT    /sessions/{id}/flights/{line}      form: pnr, from, to, fare, pax
+ *   DELETE /sessions/{id}/flights/{line}
+ *   POST / GET / PUT / DELETE …/cars[/{line}] the same for car rentals (form: carNo, from, to, fare)
+ *   GET    /sessions/{id}/totals              JSON
+ *   GET    /sessions/{id}/pdf                 the invoice PDF; ETag is the PdfCache key
+ *   GET    /metrics                           per-endpoint request timings, as text
+ *
+ * Each session is a SharedSession, so requests read consistent snapshots and
+ * edits to one session are applied one at a time. Every session response carries
+ * X-Session-Version; an edit sent with X-If-Version is refused with 409 if the
+ * session has moved on since that version.
+ *
+ * Requests run one per virtual thread on Java 21 and later, otherwise on a fixed
+ * pool. At most --renders PDFs are rendered at once, with up to --queue more
+ * waiting; beyond that, or after waiting QUEUE_TIMEOUT_SECONDS, the PDF request
+ * gets 503 with a Retry-After estimated from recent render times. PDFs already in
+ * PdfCache are served without taking a render slot, and requests for a PDF that
+ * is being rendered wait for that render instead of starting another.
+ *
+ * Errors: 400 for a request body that is malformed or cannot be read, 404 for
+ * unknown sessions and lines, 503 when the render queue is full or a render is
+ * interrupted, and 500, with the details in the server log only, when a render
+ * fails or anything else goes wrong.
+ *
+ * New sessions take the company details and GST rate from the --settings file
+ * (the .properties format the desktop app saves), or else from the desktop
+ * user's settings. Either is read once, at startup.
+ *
+ * Sessions are held in memory only; save them with GET /sessions/{id}. A session
+ * no request has touched for --idle-minutes (default 60; 0 = never) is dropped.
+ * At most --max-sessions (default 1000) are held: creating one more first drops
+ * idle sessions, then gets 503 if the server is still full. PUT to an existing
+ * ID gets 409 unless it asks to overwrite.
+ */
+public class InvoiceServer {
+
+    private static final Logger LOG = Logger.getLogger(InvoiceServer.class.getName());
+
+    public static final int  DEFAULT_PORT          = 8080;
+    public static final long QUEUE_TIMEOUT_SECONDS = 30;
+    public static final int  DEFAULT_MAX_SESSIONS  = 1000;
+    public static final long DEFAULT_IDLE_MINUTES  = 60;
+
+    static final int MAX_BODY_BYTES   = 16 << 20;
+    static final int FALLBACK_THREADS = 64;
+
+    private static final Pattern SESSION_ID = Pattern.compile("[A-Za-z0-9_.-]{1,64}");
+
+    private static final Set<String> ROUTES = new HashSet<>(Arrays.asList(
+        "POST /sessions",
+        "GET /sessions/{id}", "PUT /sessions/{id}", "DELETE /sessions/{id}",
+        "POST /sessions/{id}/customer",
+        "POST /sessions/{id}/flights", "GET /sessions/{id}/flights",
+        "PUT /sessions/{id}/flights/{line}", "DELETE /sessions/{id}/flights/{line}",
+        "POST /sessions/{id}/cars", "GET /sessions/{id}/cars",
+        "PUT /sessions/{id}/cars/{line}", "DELETE /sessions/{id}/cars/{line}",
+        "GET /sessions/{id}/totals", "GET /sessions/{id}/pdf",
+        "GET /metrics"));
+
+    private final HttpServer      server;
+    private final ExecutorService executor;
+    private final boolean         virtualThreads;
+
+    private final Map<String, Hosted>      sessions      = new ConcurrentHashMap<>();
+    private final AtomicLong               nextSessionId = new AtomicLong();
+    private final int                      maxSessions;
+    private final long                     idleNanos;    // 0 = sessions never expire
+    private final ScheduledExecutorService expiry;       // drops idle sessions
+
+    private final BookingSession      defaults;     // company details and GST rate for new sessions
+    private final PDFGeneratorService generator = new PDFGeneratorService();
+    private final PdfCache            cache;        // null = always render
+    private final int                 maxRenders;
+    private final int                 maxQueued;
+    private final Semaphore           renderSlots;  // renders running
+    private final Semaphore           queueSlots;   // renders running or waiting for a slot
+
+    private final Metrics metrics = new Metrics();
+
+    /**
+     * @param address    where to listen; port 0 picks a free port
+     * @param maxRenders PDFs rendered at once
+     * @param maxQueued  PDF requests allowed to wait for a render slot before 503s start
+     * @param cache      cache of rendered PDFs, or null to render every request
+     * @param settings    company details and GST rate for new sessions; read here, once
+     * @param maxSessions sessions held at once
+     * @param idleMinutes how long a session may go without requests before it is dropped; 0 = forever
+     */
+    public InvoiceServer(InetSocketAddress address, int maxRenders, int maxQueued, PdfCache cache,
+                         AppSettings settings, int maxSessions, long idleMinutes) throws IOException {
+        if (maxRenders < 1)  throw new IllegalArgumentException("At least 1 render slot required.");
+        if (maxQueued < 0)   throw new IllegalArgumentException("Queue length cannot be negative.");
+        if (maxSessions < 1) throw new IllegalArgumentException("At least 1 session required.");
+        if (idleMinutes < 0) throw new IllegalArgumentException("Idle timeout cannot be negative.");
+        this.maxSessions = maxSessions;
+        this.idleNanos   = TimeUnit.MINUTES.toNanos(idleMinutes);
+        this.maxRenders  = maxRenders;
+        this.maxQueued   = maxQueued;
+        this.renderSlots = new Semaphore(maxRenders);
+        this.queueSlots  = new Semaphore(maxRenders + maxQueued);
+        this.cache       = cache;
+
+        BookingSession d = new BookingSession();
+        settings.applyTo(d);
+        this.defaults = d.readOnlyCopy();
+
+        ExecutorService vt = newVirtualThreadExecutor();
+        this.virtualThreads = vt != null;
+        this.executor = vt != null ? vt : Executors.newFixedThreadPool(FALLBACK_THREADS, r -> {
+            Thread t = new Thread(r, "http-worker");
+            t.setDaemon(true);
+            return t;
+        });
+
+        this.server = HttpServer.create(address, 0);
+        this.server.createContext("/", this::handle);
+        this.server.setExecutor(executor);
+
+        this.expiry = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "session-expiry");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Executors.newVirtualThreadPerTaskExecutor() on Java 21 and later, else null.
+     * Looked up reflectively because the build targets Java 11.
+     */
+    private static ExecutorService newVirtualThreadExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null; // older JDK, or virtual threads still a preview feature
+        }
+    }
+
+    public void start() {
+        server.start();
+        if (idleNanos > 0) {
+            long period = Math.min(idleNanos, TimeUnit.MINUTES.toNanos(1));
+            expiry.scheduleWithFixedDelay(this::expireIdle, period, period, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /** Stops accepting connections, gives open requests up to delaySeconds to finish, then shuts down. */
+    public void stop(int delaySeconds) {
+        server.stop(delaySeconds);
+        executor.shutdown();
+        expiry.shutdownNow();
+    }
+
+    /** The port actually bound, useful when constructed with port 0. */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    // -------------------------------------------------------------------------
+    // Dispatch
+    // -------------------------------------------------------------------------
+
+    private void handle(HttpExchange ex) {
+        long   start = System.nanoTime();
+        String route = "other";
+        try {
+            String[] path = segments(ex.getRequestURI().getRawPath());
+            String   key  = ex.getRequestMethod() + " " + routeKey(path);
+            if (ROUTES.contains(key)) route = key;
+            dispatch(ex, route, path);
+        } catch (HttpError e) {
+            if (e.retryAfterSeconds > 0)
+                ex.getResponseHeaders().set("Retry-After", Long.toString(e.retryAfterSeconds));
+            trySend(ex, e.status, e.getMessage());
+        } catch (IllegalArgumentException e) {
+            trySend(ex, 400, e.getMessage());
+        } catch (InterruptedIOException e) {
+            trySend(ex, 503, "Interrupted while rendering; try again shortly.");
+        } catch (IOException | RuntimeException e) {
+            // Request body errors are already 400s (see readBody), so this is a
+            // failed render or a bug. Once a response has started, it is the
+            // client that has gone, which is not worth logging.
+            if (ex.getResponseCode() == -1) LOG.log(Level.SEVERE, ex.getRequestMethod() + " " + ex.getRequestURI() + " failed", e);
+            trySend(ex, 500, "Internal error; see the server log.");
+        } finally {
+            metrics.record(route, ex.getResponseCode(), System.nanoTime() - start);
+            ex.close();
+        }
+    }
+
+    private void dispatch(HttpExchange ex, String route, String[] path) throws IOException {
+        switch (route) {
+            case "POST /sessions":                      createSession(ex);                                return;
+            case "GET /sessions/{id}":                  getSession(ex, path[1]);                          return;
+            case "PUT /sessions/{id}":                  putSession(ex, path[1]);                          return;
+            case "DELETE /sessions/{id}":               deleteSession(ex, path[1]);                       return;
+            case "POST /sessions/{id}/customer":        setCustomer(ex, session(path[1]));                return;
+            case "POST /sessions/{id}/flights":         importLines(ex, session(path[1]), true);          return;
+            case "POST /sessions/{id}/cars":            importLines(ex, session(path[1]), false);         return;
+            case "GET /sessions/{id}/flights":          listFlights(ex, session(path[1]));                return;
+            case "GET /sessions/{id}/cars":             listCars(ex, session(path[1]));                   return;
+            case "PUT /sessions/{id}/flights/{line}":   replaceFlight(ex, session(path[1]), lineId(path[3])); return;
+            case "PUT /sessions/{id}/cars/{line}":      replaceCar(ex, session(path[1]), lineId(path[3]));    return;
+            case "DELETE /sessions/{id}/flights/{line}": deleteFlight(ex, session(path[1]), lineId(path[3])); return;
+            case "DELETE /sessions/{id}/cars/{line}":   deleteCar(ex, session(path[1]), lineId(path[3]));     return;
+            case "GET /sessions/{id}/totals":           totals(ex, session(path[1]));                     return;
+            case "GET /sessions/{id}/pdf":              pdf(ex, session(path[1]));                        return;
+            case "GET /metrics":                        sendText(ex, 200, metricsReport());               return;
+            default: throw new HttpError(404, "No such endpoint: " + ex.getRequestMethod() + " " + ex.getRequestURI().getPath());
+        }
+    }
+
+    private static String[] segments(String rawPath) {
+        String p = rawPath.startsWith("/") ? rawPath.substring(1) : rawPath;
+        if (p.endsWith("/")) p = p.substring(0, p.length() - 1);
+        if (p.isEmpty()) return new String[0];
+        String[] parts = p.split("/");
+        for (int i = 0; i < parts.length; i++) parts[i] = URLDecoder.decode(parts[i], StandardCharsets.UTF_8);
+        return parts;
+    }
+
+    /** Path with the session and line IDs replaced by placeholders, e.g. /sessions/{id}/flights/{line}. */
+    private static String routeKey(String[] path) {
+        if (path.length == 0) return "/";
+        StringBuilder sb = new StringBuilder("/").append(path[0]);
+        if (path[0].equals("sessions")) {
+            if (path.length > 1) sb.append("/{id}");
+            if (path.length > 2) sb.append('/').append(path[2]);
+            if (path.length > 3) sb.append("/{line}");
+            if (path.length > 4) sb.append("/…");
+        } else if (path.length > 1) {
+            sb.append("/…");
+        }
+        return sb.toString();
+    }
+
+    // -------------------------------------------------------------------------
+    // Sessions
+    // -------------------------------------------------------------------------
+
+    /** A held session and when a request last used it. */
+    private static final class Hosted {
+        final SharedSession shared;
+        volatile long       lastUsed = System.nanoTime();
+
+        Hosted(SharedSession shared) {
+            this.shared = shared;
+        }
+    }
+
+    private SharedSession session(String id) {
+        Hosted h = sessions.get(id);
+        if (h == null) throw new HttpError(404, "No session " + id);
+        h.lastUsed = System.nanoTime();
+        return h.shared;
+    }
+
+    /**
+     * Adds session id, or replaces it if overwrite is set. Returns true if it is new.
+     * Throws 409 if id is taken and overwrite is not set, and 503 if the server holds
+     * maxSessions even after dropping idle ones. Serialised so that the limit holds.
+     */
+    private synchronized boolean addSession(String id, SharedSession shared, boolean overwrite) {
+        boolean exists = sessions.containsKey(id);
+        if (exists && !overwrite)
+            throw new HttpError(409, "Session " + id + " already exists; PUT with ?overwrite=true to replace it.");
+        if (!exists && sessions.size() >= maxSessions) {
+            expireIdle();
+            if (sessions.size() >= maxSessions)
+                throw new HttpError(503, "Session limit of " + maxSessions + " reached; delete sessions no longer needed.");
+        }
+        sessions.put(id, new Hosted(shared));
+        return !exists;
+    }
+
+    /** Drops the sessions no request has used within the idle timeout. */
+    private void expireIdle() {
+        if (idleNanos == 0) return;
+        long now = System.nanoTime();
+        sessions.values().removeIf(h -> now - h.lastUsed > idleNanos);
+    }
+
+    private void createSession(HttpExchange ex) throws IOException {
+        Map<String, String> form = readForm(ex);
+        BookingSession s = defaults.copy();
+        s.setCustomerDetails("", "", "", "INV-" + System.currentTimeMillis() / 1000, new Date());
+        applyCustomer(s, form);
+
+        String id = "s" + nextSessionId.incrementAndGet();
+        SharedSession shared = new SharedSession(s);
+        addSession(id, shared, false);
+        ex.getResponseHeaders().set("Location", "/sessions/" + id);
+        sendSessionJson(ex, 201, id, shared.snapshot());
+    }
+
+    private void getSession(HttpExchange ex, String id) throws IOException {
+        BookingSession s = session(id).snapshot();
+        ByteArrayOutputStream out = new ByteArrayOutputStream(4096);
+        SessionFormat.write(s, out);
+        ex.getResponseHeaders().set("Content-Disposition", "attachment; filename=\"" + id + ".rss\"");
+        versionHeader(ex, s);
+        send(ex, 200, "application/octet-stream", out.toByteArray());
+    }
+
+    private void putSession(HttpExchange ex, String id) throws IOException {
+        if (!SESSION_ID.matcher(id).matches())
+            throw new IllegalArgumentException("Session IDs are 1-64 letters, digits, '.', '_' or '-'.");
+        BookingSession loaded;
+        try {
+            loaded = SessionFormat.read(new ByteArrayInputStream(readBody(ex)));
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Cannot read the session file: " + e.getMessage());
+        }
+        boolean overwrite = "true".equals(parseForm(ex.getRequestURI().getRawQuery()).get("overwrite"));
+        SharedSession shared  = new SharedSession(validated(loaded));
+        boolean       created = addSession(id, shared, overwrite);
+        sendSessionJson(ex, created ? 201 : 200, id, shared.snapshot());
+    }
+
+    /**
+     * A session holding loaded's details and lines, with the lines put through
+     * addFlights / addCars: a client's file is checked against the same rules as
+     * lines added any other way. Throws 400 listing the lines that break them.
+     * Missing company details are taken from the server's settings.
+     */
+    private BookingSession validated(BookingSession loaded) {
+        BookingSession s = defaults.copy();
+        s.setCompanyDetails(orDefault(loaded.getCompanyName(), s.getCompanyName()),
+                            orDefault(loaded.getCompanyTagline(), s.getCompanyTagline()),
+                            orDefault(loaded.getCompanyEmail(), s.getCompanyEmail()),
+                            orDefault(loaded.getCompanyPhone(), s.getCompanyPhone()));
+        s.setCustomerDetails(loaded.getCustomerName(), loaded.getContactNumber(), loaded.getAddress(),
+                             loaded.getInvoiceNumber(), loaded.getBookingDate());
+        s.setGstRate(gstRate(loaded.getGstRatePercent()));
+        ValidationReport flights = s.addFlights(loaded.getFlights());
+        ValidationReport cars    = s.addCars(loaded.getCars());
+        if (flights.isEmpty() && cars.isEmpty()) return s;
+
+        int bad = flights.size() + cars.size();
+        StringBuilder sb = new StringBuilder("Session file has ").append(bad).append(" invalid line(s):");
+        int shown = 0;
+        for (int i = 0; i < flights.size() && shown < 10; i++, shown++)
+            sb.append("\nflight ").append(flights.row(i) + 1).append(": ").append(flights.rule(i).message);
+        for (int i = 0; i < cars.size() && shown < 10; i++, shown++)
+            sb.append("\ncar ").append(cars.row(i) + 1).append(": ").append(cars.rule(i).message);
+        if (bad > shown) sb.append("\n… and ").append(bad - shown).append(" more");
+        throw new IllegalArgumentException(sb.toString());
+    }
+
+    private static String orDefault(String value, String fallback) {
+        return value == null ? fallback : value;
+    }
+
+    private void deleteSession(HttpExchange ex, String id) throws IOException {
+        if (sessions.remove(id) == null) throw new HttpError(404, "No session " + id);
+        send(ex, 204, null, null);
+    }
+
+    private void setCustomer(HttpExchange ex, SharedSession shared) throws IOException {
+        Map<String, String> form = readForm(ex);
+        BookingSession s = edit(ex, shared, live -> applyCustomer(live, form));
+        sendSessionJson(ex, 200, null, s);
+    }
+
+    /** Sets whichever customer fields the form has, keeping the rest. */
+    private static void applyCustomer(BookingSession s, Map<String, String> form) {
+        Date date = s.getBookingDate();
+        if (form.containsKey("date")) {
+            try {
+                date = Date.from(LocalDate.parse(form.get("date")).atStartOfDay(ZoneId.systemDefault()).toInstant());
+            } catch (DateTimeParseException e) {
+                throw new IllegalArgumentException("date must be yyyy-MM-dd.");
+            }
+        }
+        s.setCustomerDetails(form.getOrDefault("name",    s.getCustomerName()),
+                             form.getOrDefault("contact", s.getContactNumber()),
+                             form.getOrDefault("address", s.getAddress()),
+                             form.getOrDefault("invoice", s.getInvoiceNumber()),
+                             date);
+        if (form.containsKey("gst")) s.setGstRate(gstRate(decimal(form.get("gst"), "gst")));
+    }
+
+    private static BigDecimal gstRate(BigDecimal rate) {
+        if (rate.signum() < 0 || rate.compareTo(new BigDecimal("100")) > 0)
+            throw new IllegalArgumentException("gst must be between 0 and 100.");
+        return rate;
+    }
+
+    /** Runs action through shared.edit, honouring X-If-Version. */
+    private static BookingSession edit(HttpExchange ex, SharedSession shared, Consumer<BookingSession> action) {
+        String expected = ex.getRequestHeaders().getFirst("X-If-Version");
+        if (expected == null) return shared.edit(action);
+        long version;
+        try {
+            version = Long.parseLong(expected.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("X-If-Version must be a session version number.");
+        }
+        BookingSession s = shared.editIfUnchanged(version, action);
+        if (s == null) throw new HttpError(409, "Session has changed since version " + version
+                                                + "; it is now at version " + shared.getVersion() + ".");
+        return s;
+    }
+
+    // -------------------------------------------------------------------------
+    // Booking Lines
+    // -------------------------------------------------------------------------
+
+    private void importLines(HttpExchange ex, SharedSession shared, boolean flights) throws IOException {
+        // Read the whole body before taking the session's write lock, so a slow client holds up no one
+        String csv = new String(readBody(ex), StandardCharsets.UTF_8);
+        CsvImporter.Report[] report = new CsvImporter.Report[1];
+        BookingSession s = edit(ex, shared, live -> {
+            try {
+                report[0] = flights ? CsvImporter.importFlights(new StringReader(csv), live)
+                                    : CsvImporter.importCars(new StringReader(csv), live);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e); // cannot happen: the reader is in memory
+            }
+        });
+
+        StringBuilder json = new StringBuilder("{\"imported\":").append(report[0].imported)
+            .append(",\"skipped\":").append(report[0].skipped)
+            .append(",\"version\":").append(s.getVersion())
+            .append(",\"errors\":[");
+        List<String> errors = report[0].errors;
+        for (int i = 0; i < errors.size(); i++) {
+            if (i > 0) json.append(',');
+            jsonString(json, errors.get(i));
+        }
+        json.append("]}");
+        versionHeader(ex, s);
+        sendJson(ex, 200, json);
+    }
+
+    private void listFlights(HttpExchange ex, SharedSession shared) throws IOException {
+        BookingSession s = shared.snapshot();
+        StringBuilder csv = new StringBuilder("id,pnr,from,to,pax,fare\n");
+        for (BookingSession.FlightBookingData f : s.getFlights()) {
+            csv.append(f.id).append(',');
+            csvCell(csv, f.pnr).append(',');
+            csvCell(csv, f.source).append(',');
+            csvCell(csv, f.dest).append(',');
+            csv.append(f.passengers).append(',').append(f.fare.toPlainString()).append('\n');
+        }
+        versionHeader(ex, s);
+        send(ex, 200, "text/csv; charset=utf-8", csv.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private void listCars(HttpExchange ex, SharedSession shared) throws IOException {
+        BookingSession s = shared.snapshot();
+        StringBuilder csv = new StringBuilder("id,carNo,from,to,fare\n");
+        for (BookingSession.CarBookingData c : s.getCars()) {
+            csv.append(c.id).append(',');
+            csvCell(csv, c.carNo).append(',');
+            csvCell(csv, c.source).append(',');
+            csvCell(csv, c.dest).append(',');
+            csv.append(c.fare.toPlainString()).append('\n');
+        }
+        versionHeader(ex, s);
+        send(ex, 200, "text/csv; charset=utf-8", csv.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private void replaceFlight(HttpExchange ex, SharedSession shared, long line) throws IOException {
+        Map<String, String> form = readForm(ex);
+        BookingSession s = edit(ex, shared, live -> {
+            BookingSession.FlightBookingData f = live.getFlightById(line);
+            if (f == null) throw new HttpError(404, "No flight line " + line);
+            live.replaceFlight(line, form.getOrDefault("pnr", f.pnr),
+                               form.getOrDefault("from", f.source), form.getOrDefault("to", f.dest),
+                               form.containsKey("fare") ? decimal(form.get("fare"), "fare") : f.fare.toBigDecimal(),
+                               form.containsKey("pax")  ? integer(form.get("pax"), "pax")   : f.passengers);
+        });
+        sendSessionJson(ex, 200, null, s);
+    }
+
+    private void replaceCar(HttpExchange ex, SharedSession shared, long line) throws IOException {
+        Map<String, String> form = readForm(ex);
+        BookingSession s = edit(ex, shared, live -> {
+            BookingSession.CarBookingData c = live.getCarById(line);
+            if (c == null) throw new HttpError(404, "No car line " + line);
+            live.replaceCar(line, form.getOrDefault("carNo", c.carNo),
+                            form.getOrDefault("from", c.source), form.getOrDefault("to", c.dest),
+                            form.containsKey("fare") ? decimal(form.get("fare"), "fare") : c.fare.toBigDecimal());
+        });
+        sendSessionJson(ex, 200, null, s);
+    }
+
+    private void deleteFlight(HttpExchange ex, SharedSession shared, long line) throws IOException {
+        BookingSession s = edit(ex, shared, live -> {
+            if (!live.removeFlightById(line)) throw new HttpError(404, "No flight line " + line);
+        });
+        sendSessionJson(ex, 200, null, s);
+    }
+
+    private void deleteCar(HttpExchange ex, SharedSession shared, long line) throws IOException {
+        BookingSession s = edit(ex, shared, live -> {
+            if (!live.removeCarById(line)) throw new HttpError(404, "No car line " + line);
+        });
+        sendSessionJson(ex, 200, null, s);
+    }
+
+    private static long lineId(String s) {
+        try {
+            return Long.parseLong(s);
+        } catch (NumberFormatException e) {
+            throw new HttpError(404, "No line " + s);
+        }
+    }
+
+    // -------------------------------------------------------------------------
+    // Totals and PDF
+    // -------------------------------------------------------------------------
+
+    private void totals(HttpExchange ex, SharedSession shared) throws IOException {
+        BookingSession s = shared.snapshot();
+        StringBuilder json = new StringBuilder("{\"invoiceNumber\":");
+        jsonString(json, s.getInvoiceNumber());
+        json.append(",\"customerName\":");
+        jsonString(json, s.getCustomerName());
+        json.append(",\"version\":").append(s.getVersion())
+            .append(",\"flights\":").append(s.getTotalFlights())
+            .append(",\"cars\":").append(s.getTotalCars())
+            .append(",\"passengers\":").append(s.getTotalPassengers())
+            .append(",\"flightTotal\":\"").append(s.getFlightTotal().toPlainString())
+            .append("\",\"carTotal\":\"").append(s.getCarTotal().toPlainString())
+            .append("\",\"subtotal\":\"").append(s.getSubtotal().toPlainString())
+            .append("\",\"gstRatePercent\":\"").append(s.getGstRatePercent().toPlainString())
+            .append("\",\"gstAmount\":\"").append(s.getGstAmount().toPlainString())
+            .append("\",\"totalAmount\":\"").append(s.getTotalAmount().toPlainString())
+            .append("\"}");
+        versionHeader(ex, s);
+        sendJson(ex, 200, json);
+    }
+
+    private void pdf(HttpExchange ex, SharedSession shared) throws IOException {
+        BookingSession s    = shared.snapshot();
+        String         key  = PdfCache.keyOf(s);
+        String         etag = '"' + key + '"';
+        Headers        h    = ex.getResponseHeaders();
+        versionHeader(ex, s);
+        if (etag.equals(ex.getRequestHeaders().getFirst("If-None-Match"))) {
+            h.set("ETag", etag);
+            send(ex, 304, null, null);
+            return;
+        }
+
+        byte[] pdf = cache != null ? cache.getOrRender(key, () -> render(s)) : render(s);
+        h.set("ETag", etag);
+        h.set("Content-Disposition", "inline; filename=\"Invoice_" + s.getInvoiceNumber().replace('"', '_') + ".pdf\"");
+        send(ex, 200, "application/pdf", pdf);
+    }
+
+    /**
+     * Renders within the concurrency limit, or throws 503 if the queue is full or the
+     * wait too long. Through the cache, requests for a PDF already being rendered wait
+     * for that render and take no slot.
+     */
+    private byte[] render(BookingSession s) throws IOException {
+        if (!queueSlots.tryAcquire()) throw busy("Render queue is full");
+        try {
+            if (!renderSlots.tryAcquire(QUEUE_TIMEOUT_SECONDS, TimeUnit.SECONDS)) throw busy("Timed out waiting to render");
+            long start = System.nanoTime();
+            try {
+                ByteArrayOutputStream out = new ByteArrayOutputStream(64 * 1024);
+                generator.generatePDF(s, out);
+                return out.toByteArray();
+            } finally {
+                renderSlots.release();
+                metrics.record("render", 200, System.nanoTime() - start);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted waiting to render");
+        } finally {
+            queueSlots.release();
+        }
+    }
+
+    /** 503 with Retry-After: roughly how long the renders now queued would take to drain. */
+    private HttpError busy(String message) {
+        int    waiting = maxRenders + maxQueued - queueSlots.availablePermits();
+        double meanMs  = metrics.meanMillis("render");
+        long   seconds = (long) Math.ceil((double) waiting / maxRenders * Math.max(meanMs, 100) / 1000);
+        return new HttpError(503, message + "; try again shortly.", Math.max(1, seconds));
+    }
+
+    // -------------------------------------------------------------------------
+    // Metrics
+    // -------------------------------------------------------------------------
+
+    private String metricsReport() {
+        int queued = maxRenders + maxQueued - queueSlots.availablePermits();
+        int active = maxRenders - renderSlots.availablePermits();
+        return "sessions " + sessions.size() + "/" + maxSessions
+             + "\nrenders running " + active + "/" + maxRenders
+             + ", waiting " + Math.max(0, queued - active) + "/" + maxQueued
+             + "\nthreads " + (virtualThreads ? "virtual, one per request" : "pool of " + FALLBACK_THREADS)
+             + "\n\n" + metrics.report();
+    }
+
+    /**
+     * Request timings per route. Each route keeps a count, status-class counters and
+     * a histogram of power-of-two microsecond buckets, all lock-free, so recording
+     * costs a few atomic adds. Percentiles are reported as the bucket's upper bound.
+     */
+    static final class Metrics {
+        private final Map<String, Stats> routes = new ConcurrentHashMap<>();
+
+        void record(String route, int status, long nanos) {
+            routes.computeIfAbsent(route, r -> new Stats()).record(status, nanos);
+        }
+
+        double meanMillis(String route) {
+            Stats s = routes.get(route);
+            return s == null ? 0 : s.meanMillis();
+        }
+
+        String report() {
+            StringBuilder sb = new StringBuilder();
+            for (Map.Entry<String, Stats> e : new TreeMap<>(routes).entrySet()) {
+                sb.append(e.getKey()).append("  ");
+                e.getValue().appendTo(sb);
+                sb.append('\n');
+            }
+            return sb.toString();
+        }
+    }
+
+    static final class Stats {
+        private static final int BUCKETS = 40; // bucket b: under 2^b microseconds
+
+        private final LongAdder       count    = new LongAdder();
+        private final LongAdder       client   = new LongAdder(); // 4xx
+        private final LongAdder       server   = new LongAdder(); // 5xx other than 503
+        private final LongAdder       rejected = new LongAdder(); // 503
+        private final LongAdder       nanos    = new LongAdder();
+        private final AtomicLong      max      = new AtomicLong();
+        private final AtomicLongArray buckets  = new AtomicLongArray(BUCKETS);
+
+        void record(int status, long elapsed) {
+            count.increment();
+            nanos.add(elapsed);
+            if (status == 503)       rejected.increment();
+            else if (status >= 500)  server.increment();
+            else if (status >= 400)  client.increment();
+            max.accumulateAndGet(elapsed, Math::max);
+            long micros = elapsed / 1000;
+            int  b      = Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(micros));
+            buckets.incrementAndGet(b);
+        }
+
+        double meanMillis() {
+            long n = count.sum();
+            return n == 0 ? 0 : nanos.sum() / 1e6 / n;
+        }
+
+        /** Upper bound, in milliseconds, of the bucket holding quantile q. */
+        double percentileMillis(double q) {
+            long[] snapshot = new long[BUCKETS];
+            long   total    = 0;
+            for (int b = 0; b < BUCKETS; b++) total += snapshot[b] = buckets.get(b);
+            long target = (long) Math.ceil(q * total), seen = 0;
+            for (int b = 0; b < BUCKETS; b++) {
+                seen += snapshot[b];
+                if (seen >= target && seen > 0) return (1L << b) / 1000.0;
+            }
+            return 0;
+        }
+
+        void appendTo(StringBuilder sb) {
+            sb.append("count=").append(count.sum())
+              .append(" 4xx=").append(client.sum())
+              .append(" 5xx=").append(server.sum())
+              .append(" rejected=").append(rejected.sum())
+              .append(String.format(Locale.ROOT, " mean=%.2fms p50<=%.2fms p95<=%.2fms p99<=%.2fms max=%.2fms",
+                                    meanMillis(), percentileMillis(0.50), percentileMillis(0.95),
+                                    percentileMillis(0.99), max.get() / 1e6));
+        }
+    }
+
+    // -------------------------------------------------------------------------
+    // Request and Response Helpers
+    // -------------------------------------------------------------------------
+
+    /** The request body; throws 400 if it cannot be read and 413 if it is too large. */
+    private static byte[] readBody(HttpExchange ex) {
+        String length = ex.getRequestHeaders().getFirst("Content-Length");
+        if (length != null && length.matches("\\d{1,19}") && Long.parseLong(length) > MAX_BODY_BYTES)
+            throw new HttpError(413, "Request body is larger than " + (MAX_BODY_BYTES >> 20) + " MB.");
+        byte[] body;
+        try (InputStream in = ex.getRequestBody()) {
+            body = in.readNBytes(MAX_BODY_BYTES + 1);
+        } catch (IOException e) {
+            throw new HttpError(400, "Could not read the request: " + e.getMessage());
+        }
+        if (body.length > MAX_BODY_BYTES)
+            throw new HttpError(413, "Request body is larger than " + (MAX_BODY_BYTES >> 20) + " MB.");
+        return body;
+    }
+
+    /** Form fields from the body, or from the query string when the body is empty. */
+    private static Map<String, String> readForm(HttpExchange ex) {
+        String body = new String(readBody(ex), StandardCharsets.UTF_8);
+        return parseForm(body.isEmpty() ? ex.getRequestURI().getRawQuery() : body);
+    }
+
+    static Map<String, String> parseForm(String encoded) {
+        Map<String, String> form = new HashMap<>();
+        if (encoded == null || encoded.isEmpty()) return form;
+        for (String pair : encoded.split("&")) {
+            if (pair.isEmpty()) continue;
+            int eq = pair.indexOf('=');
+            String name  = URLDecoder.decode(eq < 0 ? pair : pair.substring(0, eq), StandardCharsets.UTF_8);
+            String value = eq < 0 ? "" : URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8);
+            form.put(name.trim(), value);
+        }
+        return form;
+    }
+
+    private static BigDecimal decimal(String s, String field) {
+        try {
+            return new BigDecimal(s.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(field + " must be a number.");
+        }
+    }
+
+    private static int integer(String s, String field) {
+        try {
+            return Integer.parseInt(s.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(field + " must be a whole number.");
+        }
+    }
+
+    private static void versionHeader(HttpExchange ex, BookingSession s) {
+        ex.getResponseHeaders().set("X-Session-Version", Long.toString(s.getVersion()));
+    }
+
+    private static void sendSessionJson(HttpExchange ex, int status, String id, BookingSession s) throws IOException {
+        StringBuilder json = new StringBuilder("{");
+        if (id != null) {
+            json.append("\"id\":");
+            jsonString(json, id);
+            json.append(',');
+        }
+        json.append("\"version\":").append(s.getVersion())
+            .append(",\"flights\":").append(s.getTotalFlights())
+            .append(",\"cars\":").append(s.getTotalCars())
+            .append(",\"totalAmount\":\"").append(s.getTotalAmount().toPlainString()).append("\"}");
+        versionHeader(ex, s);
+        sendJson(ex, status, json);
+    }
+
+    private static void sendJson(HttpExchange ex, int status, CharSequence json) throws IOException {
+        send(ex, status, "application/json; charset=utf-8", json.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void sendText(HttpExchange ex, int status, String text) throws IOException {
+        send(ex, status, "text/plain; charset=utf-8", (text + "\n").getBytes(StandardCharsets.UTF_8));
+    }
+
+    /** Sends an error, unless a response is already on its way (then there is nothing more to say). */
+    private static void trySend(HttpExchange ex, int status, String text) {
+        if (ex.getResponseCode() != -1) return;
+        try {
+            sendText(ex, status, text == null ? "Error" : text);
+        } catch (IOException ignored) {
+            // client has gone
+        }
+    }
+
+    private static void send(HttpExchange ex, int status, String contentType, byte[] body) throws IOException {
+        if (contentType != null) ex.getResponseHeaders().set("Content-Type", contentType);
+        if (body == null || status == 204 || status == 304) {
+            ex.sendResponseHeaders(status, -1);
+            return;
+        }
+        ex.sendResponseHeaders(status, body.length);
+        try (OutputStream out = ex.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private static void jsonString(StringBuilder sb, String s) {
+        sb.append('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            switch (c) {
+                case '"':  sb.append("\\\""); break;
+                case '\\': sb.append("\\\\"); break;
+                case '\n': sb.append("\\n");  break;
+                case '\r': sb.append("\\r");  break;
+                case '\t': sb.append("\\t");  break;
+                default:
+                    if (c < 0x20) sb.append(String.format("\\u%04x", (int) c));
+                    else          sb.append(c);
+            }
+        }
+        sb.append('"');
+    }
+
+    private static StringBuilder csvCell(StringBuilder sb, String s) {
+        if (s.indexOf(',') < 0 && s.indexOf('"') < 0 && s.indexOf('\n') < 0 && s.indexOf('\r') < 0) return sb.append(s);
+        return sb.append('"').append(s.replace("\"", "\"\"")).append('"');
+    }
+
+    /** An error that maps straight to an HTTP status. Unchecked, so it can leave a SharedSession edit. */
+    static final class HttpError extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        final int  status;
+        final long retryAfterSeconds; // 0 = none
+
+        HttpError(int status, String message) {
+            this(status, message, 0);
+        }
+
+        HttpError(int status, String message, long retryAfterSeconds) {
+            super(message, null, false, false);
+            this.status            = status;
+            this.retryAfterSeconds = retryAfterSeconds;
+        }
+    }
+
+    // -------------------------------------------------------------------------
+    // Entry Point
+    // -------------------------------------------------------------------------
+
+    public static void main(String[] args) {
+        System.setProperty("java.awt.headless", "true");
+
+        int     port    = DEFAULT_PORT;
+        String  bind    = "127.0.0.1";
+        int     renders = Runtime.getRuntime().availableProcessors();
+        int     queue   = -1;
+        boolean cached  = true;
+        String  config  = null;
+        int     max     = DEFAULT_MAX_SESSIONS;
+        long    idle    = DEFAULT_IDLE_MINUTES;
+        try {
+            for (int i = 0; i < args.length; i++) {
+                if      (args[i].equals("--port")         && i + 1 < args.length) port    = Integer.parseInt(args[++i]);
+                else if (args[i].equals("--bind")         && i + 1 < args.length) bind    = args[++i];
+                else if (args[i].equals("--renders")      && i + 1 < args.length) renders = Integer.parseInt(args[++i]);
+                else if (args[i].equals("--queue")        && i + 1 < args.length) queue   = Integer.parseInt(args[++i]);
+                else if (args[i].equals("--max-sessions") && i + 1 < args.length) max     = Integer.parseInt(args[++i]);
+                else if (args[i].equals("--idle-minutes") && i + 1 < args.length) idle    = Long.parseLong(args[++i]);
+                else if (args[i].equals("--settings")     && i + 1 < args.length) config  = args[++i];
+                else if (args[i].equals("--no-cache"))                            cached  = false;
+                else throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+            if (queue < 0) queue = 4 * renders;
+
+            if (config != null && !new File(config).isFile()) throw new IllegalArgumentException("No settings file " + config);
+            AppSettings settings = config != null ? AppSettings.load(new File(config)) : AppSettings.getInstance();
+            InvoiceServer server = new InvoiceServer(new InetSocketAddress(bind, port), renders, queue,
+                                                     cached ? PdfCache.shared() : null, settings, max, idle);
+            server.start();
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> server.stop(1), "http-shutdown"));
+            System.out.printf("Invoice server on http://%s:%d/ (%d render slots, queue %d, %s)%n",
+                              bind, server.getPort(), renders, queue,
+                              server.virtualThreads ? "virtual threads" : FALLBACK_THREADS + " worker threads");
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println("Usage: InvoiceServer [--port N] [--bind ADDRESS] [--renders N] [--queue N]"
+                               + " [--max-sessions N] [--idle-minutes N] [--settings FILE] [--no-cache]");
+            System.exit(2);
+        } catch (IOException e) {
+            System.err.println("Cannot start server: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+}
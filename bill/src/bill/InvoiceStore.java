@@ -0,0 +1,924 @@
+package bill;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32;
+
+import static java.nio.file.StandardOpenOption.*;
+
+/**
+ * Embedded single-folder invoice store — an alternative to keeping one .rss file
+ * per invoice.
+ *
+ * Layout of the store folder:
+ * <pre>
+ *   CURRENT               generation number of the live files
+ *   invoices-N.seg        append-only segment of session records
+ *   invoices-N.idx        memory-mapped hash index: invoice number → segment offset
+ *   LOCK                  held while the store is open, one process at a time
+ * </pre>
+ *
+ * A segment record is
+ * {@code int REC_MAGIC, int bodyLength, body, int crc32(body)} where the body is
+ * {@code byte type, int keyLength, key (UTF-8), SessionFormat bytes}. Saving an
+ * invoice appends a PUT record and points the index at it; the older version
+ * stays in the segment as garbage until compaction. Deleting appends a
+ * tombstone. Bytes already in a segment are never rewritten.
+ *
+ * The index is an open-addressing table of {@code long hash, long offset} slots,
+ * probed linearly. Lookups compare the 64-bit hash and confirm the key against
+ * the record itself, so opening an invoice costs one probe and one positional
+ * read. The index is only a cache: its header records how much of the segment
+ * it covers and whether the store was closed cleanly. On open, records past the
+ * covered length are replayed, and an unclean index is rebuilt from the segment.
+ * A torn record at the end of the segment (crash mid-write) is moved aside to a
+ * .damaged file and truncated away.
+ *
+ * Compaction copies live records into generation N+1 without holding the store
+ * lock, then briefly locks to copy anything appended meanwhile, writes the new
+ * index and switches CURRENT. It starts in the background once superseded
+ * records make up more than half of a segment of at least COMPACT_MIN_GARBAGE
+ * bytes, or on demand via {@link #compact()}.
+ *
+ * Run {@code InvoiceStore <store-dir> <rss-folder>...} (or MainApp --import) to
+ * import existing .rss folders.
+ */
+public class InvoiceStore implements Closeable {
+
+    /** Callback for sequential scans. */
+    public interface Visitor<T> {
+        void visit(T value) throws IOException;
+    }
+
+    private static final String  CURRENT_FILE = "CURRENT";
+    private static final String  LOCK_FILE    = "LOCK";
+    private static final Pattern GEN_FILE     = Pattern.compile("invoices-(\\d+)\\.(seg|idx)");
+
+    private static final int  SEG_MAGIC   = 0x52535353; // "RSSS"
+    private static final int  REC_MAGIC   = 0x52454331; // "REC1"
+    private static final int  IDX_MAGIC   = 0x52535358; // "RSSX"
+    private static final int  VERSION     = 1;
+    private static final int  SEG_HEADER  = 8;           // magic + version
+    private static final int  REC_HEADER  = 8;           // magic + body length
+    private static final int  REC_CRC     = 4;
+    private static final int  MAX_BODY    = 1 << 26;
+    private static final byte PUT         = 1;
+    private static final byte DELETE      = 2;
+
+    // Index header: magic, version, capacity, count, used, clean, covered (long), garbage (long)
+    private static final int  IDX_HEADER       = 64;
+    private static final int  SLOT             = 16;
+    private static final int  INITIAL_CAPACITY = 1024;
+    private static final long EMPTY            = 0;   // offsets are never below SEG_HEADER
+    private static final long DELETED          = -1;
+
+    private static final long COMPACT_MIN_GARBAGE = 4L << 20;
+
+    private final File          dir;
+    private final FileChannel   lockChannel;
+    private final FileLock      lock;
+    private final AtomicBoolean compacting = new AtomicBoolean();
+    private ExecutorService     compactor;
+    private boolean             closed;
+
+    // Group commit: writers append under the store lock and fsync after releasing
+    // it. One force covers every record appended before it started, so a writer
+    // whose record is already covered skips its own.
+    private final Object syncLock = new Object();
+    private int          syncedGen;    // guarded by syncLock
+    private long         syncedEnd;    // guarded by syncLock: segment bytes known to be on disk
+
+    private int              gen;
+    private FileChannel      seg;
+    private FileChannel      idxChannel;
+    private MappedByteBuffer idx;
+    private int              capacity, count, used;
+    private long             end, garbage;
+
+    private InvoiceStore(File dir, FileChannel lockChannel, FileLock lock) {
+        this.dir         = dir;
+        this.lockChannel = lockChannel;
+        this.lock        = lock;
+    }
+
+    /** Opens (or creates) the store in a folder. */
+    public static InvoiceStore open(File dir) throws IOException {
+        if (!dir.isDirectory() && !dir.mkdirs()) throw new IOException("Cannot create store folder: " + dir);
+        FileChannel lc = FileChannel.open(new File(dir, LOCK_FILE).toPath(), CREATE, WRITE);
+        FileLock    fl;
+        try {
+            fl = lc.tryLock();
+        } catch (OverlappingFileLockException e) {
+            fl = null;  // already open elsewhere in this JVM
+        } catch (IOException | RuntimeException e) {
+            lc.close();
+            throw e;
+        }
+        if (fl == null) {
+            lc.close();
+            throw new IOException("Invoice store is in use by another process: " + dir);
+        }
+        InvoiceStore store = new InvoiceStore(dir, lc, fl);
+        try {
+            store.openGeneration(readCurrent(dir));
+            store.deleteStaleGenerations();
+        } catch (IOException | RuntimeException e) {
+            store.closeFiles();
+            lc.close();
+            throw e;
+        }
+        return store;
+    }
+
+    // -------------------------------------------------------------------------
+    // Public API
+    // -------------------------------------------------------------------------
+
+    /** Saves a session under its invoice number, replacing any earlier version. */
+    public void put(BookingSession session) throws IOException {
+        putAll(Collections.singletonList(session));
+    }
+
+    /**
+     * Saves several sessions with a single fsync. Later entries win if two share
+     * an invoice number. Bulk loads should use this rather than put: the sessions
+     * are encoded before the store is locked, and the fsync happens after it is
+     * released and is shared with any put that finished meanwhile.
+     */
+    public void putAll(Collection<BookingSession> sessions) throws IOException {
+        List<String>                keys     = new ArrayList<>(sessions.size());
+        List<ByteArrayOutputStream> payloads = new ArrayList<>(sessions.size());
+        for (BookingSession s : sessions) {
+            keys.add(keyOf(s.getInvoiceNumber()));
+            ByteArrayOutputStream payload = new ByteArrayOutputStream(1024);
+            SessionFormat.write(s, payload);
+            payloads.add(payload);
+        }
+        long written;
+        synchronized (this) {
+            ensureOpen();
+            for (int i = 0; i < keys.size(); i++) {
+                String key    = keys.get(i);
+                long   offset = append(PUT, key, payloads.get(i));
+                long   old    = indexPut(key, offset);
+                if (old != EMPTY) garbage += recordLength(old);
+            }
+            writeHeader();
+            written = end;
+        }
+        sync(written);
+        maybeCompact();
+    }
+
+    /**
+     * Loads the latest version of an invoice, or null if the store has none. The
+     * store is locked only to look up the record; it is read and decoded without
+     * the lock, so lookups do not hold up saves.
+     */
+    public BookingSession get(String invoiceNumber) throws IOException {
+        Record r = find(invoiceNumber);
+        return r == null ? null : SessionFormat.read(r.payload());
+    }
+
+    /** Reads only the summary header of an invoice, or null if the store has none. */
+    public BookingSession.Summary getSummary(String invoiceNumber) throws IOException {
+        Record r = find(invoiceNumber);
+        return r == null ? null : SessionFormat.readSummary(r.payload());
+    }
+
+    public synchronized boolean contains(String invoiceNumber) throws IOException {
+        ensureOpen();
+        return slotOf(keyOf(invoiceNumber)) >= 0;
+    }
+
+    /** Removes an invoice. Returns false if it was not in the store. */
+    public boolean delete(String invoiceNumber) throws IOException {
+        long written;
+        synchronized (this) {
+            ensureOpen();
+            String key  = keyOf(invoiceNumber);
+            int    slot = slotOf(key);
+            if (slot < 0) return false;
+            long old  = offsetAt(slot);
+            long tomb = append(DELETE, key, new ByteArrayOutputStream(0));
+            idx.putLong(slotPos(slot) + 8, DELETED);
+            count--;
+            garbage += recordLength(old) + recordLength(tomb);
+            writeHeader();
+            written = end;
+        }
+        sync(written);
+        maybeCompact();
+        return true;
+    }
+
+    /** Number of invoices in the store. */
+    public synchronized int size() {
+        return count;
+    }
+
+    /**
+     * Visits every invoice stored when the scan starts, once, in the order it was
+     * last saved. The store is locked only to take that list; records are read
+     * and visited without the lock, so other threads can save, delete and
+     * compact while a scan runs, and see none of it.
+     */
+    public void scan(Visitor<BookingSession> visitor) throws IOException {
+        scanLive(r -> visitor.visit(SessionFormat.read(r.payload())));
+    }
+
+    /** Like {@link #scan} but decodes only each invoice's summary header. */
+    public void scanSummaries(Visitor<BookingSession.Summary> visitor) throws IOException {
+        scanLive(r -> visitor.visit(SessionFormat.readSummary(r.payload())));
+    }
+
+    /** Starts compaction on a background thread unless one is already running. */
+    public synchronized Future<Boolean> compactInBackground() {
+        if (closed) return CompletableFuture.completedFuture(false);
+        if (compactor == null) {
+            compactor = Executors.newSingleThreadExecutor(r -> {
+                Thread t = new Thread(r, "invoice-store-compactor");
+                t.setDaemon(true);
+                return t;
+            });
+        }
+        return compactor.submit(this::compact);
+    }
+
+    /**
+     * Rewrites the store without superseded versions and tombstones. Returns
+     * false if another compaction was already running or the store was closed.
+     */
+    public boolean compact() throws IOException {
+        if (!compacting.compareAndSet(false, true)) return false;
+        try {
+            return doCompact();
+        } finally {
+            compacting.set(false);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        ExecutorService c;
+        synchronized (this) {
+            if (closed) return;
+            c = compactor;
+        }
+        // Let a running compaction finish; it needs the store lock to switch over
+        if (c != null) {
+            c.shutdown();
+            try {
+                c.awaitTermination(1, TimeUnit.MINUTES);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        synchronized (this) {
+            if (closed) return;
+            closed = true;
+            try {
+                seg.force(false);
+                writeHeader();
+                idx.putInt(20, 1); // clean: the next open can trust the index as-is
+                idx.force();
+            } finally {
+                closeFiles();
+                try { lock.release(); } finally { lockChannel.close(); }
+            }
+        }
+    }
+
+    // -------------------------------------------------------------------------
+    // Opening & Recovery
+    // -------------------------------------------------------------------------
+
+    private void openGeneration(int g) throws IOException {
+        gen = g;
+        seg = FileChannel.open(segmentFile(g).toPath(), CREATE, READ, WRITE);
+        if (seg.size() == 0) {
+            ByteBuffer h = ByteBuffer.allocate(SEG_HEADER).putInt(SEG_MAGIC).putInt(VERSION);
+            h.flip();
+            writeFully(seg, h, 0);
+        } else {
+            ByteBuffer h = ByteBuffer.allocate(SEG_HEADER);
+            if (seg.size() < SEG_HEADER) throw new StreamCorruptedException("Truncated segment " + segmentFile(g));
+            readFully(seg, h, 0);
+            if (h.getInt(0) != SEG_MAGIC || h.getInt(4) != VERSION)
+                throw new StreamCorruptedException("Not an invoice store segment: " + segmentFile(g));
+        }
+
+        idxChannel = FileChannel.open(indexFile(g).toPath(), CREATE, READ, WRITE);
+        if (!loadIndex()) {
+            resetIndex(INITIAL_CAPACITY);
+            end     = SEG_HEADER;
+            garbage = 0;
+        }
+        replay();
+        idx.putInt(20, 0); // dirty until close()
+        writeHeader();
+    }
+
+    /** Maps the existing index if it was closed cleanly and matches the segment. */
+    private boolean loadIndex() throws IOException {
+        long size = idxChannel.size();
+        if (size < IDX_HEADER) return false;
+        MappedByteBuffer m = idxChannel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        if (m.getInt(0) != IDX_MAGIC || m.getInt(4) != VERSION || m.getInt(20) != 1) return false;
+        int  cap     = m.getInt(8);
+        long covered = m.getLong(24);
+        if (cap < INITIAL_CAPACITY || Integer.bitCount(cap) != 1 || size < IDX_HEADER + (long) cap * SLOT) return false;
+        if (covered < SEG_HEADER || covered > seg.size()) return false;
+        idx      = m;
+        capacity = cap;
+        count    = m.getInt(12);
+        used     = m.getInt(16);
+        end      = covered;
+        garbage  = m.getLong(32);
+        return true;
+    }
+
+    /** Indexes records appended after the covered length; a torn tail is set aside and cut off. */
+    private void replay() throws IOException {
+        long size = seg.size();
+        while (end < size) {
+            Record r = readRecord(seg, end, size);
+            if (r == null) {
+                setAsideDamagedTail(end, size);
+                break;
+            }
+            apply(r, end);
+            end += r.length;
+        }
+    }
+
+    private void apply(Record r, long offset) throws IOException {
+        if (r.type == PUT) {
+            long old = indexPut(r.key, offset);
+            if (old != EMPTY) garbage += recordLength(old);
+        } else {
+            int slot = slotOf(r.key);
+            if (slot >= 0) {
+                garbage += recordLength(offsetAt(slot));
+                idx.putLong(slotPos(slot) + 8, DELETED);
+                count--;
+            }
+            garbage += r.length;
+        }
+    }
+
+    private void setAsideDamagedTail(long from, long size) throws IOException {
+        File damaged = new File(dir, segmentFile(gen).getName() + ".damaged-" + from);
+        try (FileChannel out = FileChannel.open(damaged.toPath(), CREATE, WRITE, TRUNCATE_EXISTING)) {
+            seg.transferTo(from, size - from, out);
+        }
+        seg.truncate(from);
+        seg.force(true);
+    }
+
+    private static int readCurrent(File dir) throws IOException {
+        File f = new File(dir, CURRENT_FILE);
+        if (!f.isFile()) return 1;
+        try {
+            return Integer.parseInt(new String(Files.readAllBytes(f.toPath()), StandardCharsets.US_ASCII).trim());
+        } catch (NumberFormatException e) {
+            throw new StreamCorruptedException("Corrupt " + f);
+        }
+    }
+
+    private void writeCurrent(int g) throws IOException {
+        File target = new File(dir, CURRENT_FILE);
+        File tmp    = new File(dir, CURRENT_FILE + ".tmp");
+        try (FileChannel ch = FileChannel.open(tmp.toPath(), CREATE, WRITE, TRUNCATE_EXISTING)) {
+            writeFully(ch, ByteBuffer.wrap(Integer.toString(g).getBytes(StandardCharsets.US_ASCII)), 0);
+            ch.force(true);
+        }
+        try {
+            Files.move(tmp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tmp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Removes files from other generations: leftovers of a compaction that never
+     * switched over, or old files that could not be deleted while still mapped.
+     */
+    private void deleteStaleGenerations() {
+        File[] files = dir.listFiles();
+        if (files == null) return;
+        for (File f : files) {
+            Matcher m = GEN_FILE.matcher(f.getName());
+            if (m.matches() && Integer.parseInt(m.group(1)) != gen) f.delete();
+        }
+    }
+
+    private File segmentFile(int g) { return new File(dir, "invoices-" + g + ".seg"); }
+    private File indexFile(int g)   { return new File(dir, "invoices-" + g + ".idx"); }
+
+    // -------------------------------------------------------------------------
+    // Segment Records
+    // -------------------------------------------------------------------------
+
+    /** A record read back from a segment; raw holds the record's bytes exactly as stored. */
+    private static final class Record {
+        final byte   type;
+        final String key;
+        final byte[] raw;
+        final int    payloadStart;
+        final int    length;
+
+        Record(byte type, String key, byte[] raw, int payloadStart) {
+            this.type         = type;
+            this.key          = key;
+            this.raw          = raw;
+            this.payloadStart = payloadStart;
+            this.length       = raw.length;
+        }
+
+        InputStream payload() {
+            return new ByteArrayInputStream(raw, payloadStart, raw.length - REC_CRC - payloadStart);
+        }
+    }
+
+    /** Appends one record at the end of the segment and returns its offset. */
+    private long append(byte type, String key, ByteArrayOutputStream payload) throws IOException {
+        byte[] k    = key.getBytes(StandardCharsets.UTF_8);
+        int    body = 1 + 4 + k.length + payload.size();
+        if (body > MAX_BODY) throw new IOException("Invoice too large for the store: " + key);
+
+        ByteBuffer buf = ByteBuffer.allocate(REC_HEADER + body + REC_CRC);
+        buf.putInt(REC_MAGIC).putInt(body).put(type).putInt(k.length).put(k).put(payload.toByteArray());
+        CRC32 crc = new CRC32();
+        crc.update(buf.array(), REC_HEADER, body);
+        buf.putInt((int) crc.getValue());
+        buf.flip();
+
+        long offset = end;
+        writeFully(seg, buf, offset);
+        end += buf.capacity();
+        return offset;
+    }
+
+    /**
+     * Reads the record at pos. Returns null if it is incomplete or fails its
+     * checksum, i.e. it is not a record this store finished writing.
+     */
+    private static Record readRecord(FileChannel ch, long pos, long limit) throws IOException {
+        if (pos + REC_HEADER > limit) return null;
+        ByteBuffer head = ByteBuffer.allocate(REC_HEADER);
+        readFully(ch, head, pos);
+        int body = head.getInt(4);
+        if (head.getInt(0) != REC_MAGIC || body < 5 || body > MAX_BODY) return null;
+        if (pos + REC_HEADER + body + REC_CRC > limit) return null;
+
+        byte[] raw = new byte[REC_HEADER + body + REC_CRC];
+        readFully(ch, ByteBuffer.wrap(raw), pos);
+        ByteBuffer b   = ByteBuffer.wrap(raw);
+        CRC32      crc = new CRC32();
+        crc.update(raw, REC_HEADER, body);
+        if ((int) crc.getValue() != b.getInt(REC_HEADER + body)) return null;
+
+        byte type   = raw[REC_HEADER];
+        int  keyLen = b.getInt(REC_HEADER + 1);
+        if ((type != PUT && type != DELETE) || keyLen < 0 || 5 + keyLen > body) return null;
+        String key = new String(raw, REC_HEADER + 5, keyLen, StandardCharsets.UTF_8);
+        return new Record(type, key, raw, REC_HEADER + 5 + keyLen);
+    }
+
+    private long recordLength(long offset) throws IOException {
+        ByteBuffer head = ByteBuffer.allocate(REC_HEADER);
+        readFully(seg, head, offset);
+        return REC_HEADER + head.getInt(4) + REC_CRC;
+    }
+
+    /**
+     * Takes the record's offset and the segment under the lock, then reads it
+     * without. Positional reads are safe alongside appends, and bytes below the
+     * end taken are never rewritten. If compaction closes the segment meanwhile,
+     * the lookup starts again in the new one.
+     */
+    private Record find(String invoiceNumber) throws IOException {
+        String key = keyOf(invoiceNumber);
+        while (true) {
+            FileChannel ch;
+            long        offset, limit;
+            int         g;
+            synchronized (this) {
+                ensureOpen();
+                int slot = slotOf(key);
+                if (slot < 0) return null;
+                offset = offsetAt(slot);
+                limit  = end;
+                ch     = seg;
+                g      = gen;
+            }
+            Record r;
+            try {
+                r = readRecord(ch, offset, limit);
+            } catch (ClosedChannelException e) {
+                synchronized (this) {
+                    if (gen == g && !closed) throw e; // closed by something other than compaction
+                }
+                continue;
+            }
+            if (r == null) throw new StreamCorruptedException("Corrupt record at offset " + offset);
+            return r;
+        }
+    }
+
+    /**
+     * Takes the live offsets and opens the segment under the lock, then reads the
+     * records without it. The scan has its own channel because compaction closes
+     * and deletes the old segment when it switches; the bytes below the snapshot
+     * end are never rewritten, so the channel keeps reading what was live.
+     */
+    private void scanLive(Visitor<Record> visitor) throws IOException {
+        long[]      offsets;
+        long        limit;
+        FileChannel ch;
+        synchronized (this) {
+            ensureOpen();
+            offsets = new long[count];
+            int n = 0;
+            for (int i = 0; i < capacity; i++) {
+                long off = offsetAt(i);
+                if (off != EMPTY && off != DELETED) offsets[n++] = off;
+            }
+            offsets = Arrays.copyOf(offsets, n);
+            limit   = end;
+            ch      = FileChannel.open(segmentFile(gen).toPath(), READ);
+        }
+        Arrays.sort(offsets);
+        try (FileChannel in = ch) {
+            for (long off : offsets) {
+                Record r = readRecord(in, off, limit);
+                if (r == null) throw new StreamCorruptedException("Corrupt record at offset " + off);
+                visitor.visit(r);
+            }
+        }
+    }
+
+    /**
+     * Forces the segment to disk up to at least upTo, unless a force that started
+     * later already has. Called without the store lock.
+     */
+    private void sync(long upTo) throws IOException {
+        synchronized (syncLock) {
+            int         g;
+            long        target;
+            FileChannel ch;
+            synchronized (this) {
+                if (closed) return;             // close() forced everything
+                g      = gen;
+                target = end;
+                ch     = seg;
+            }
+            if (g == syncedGen && syncedEnd >= upTo) return;
+            try {
+                ch.force(false);
+            } catch (ClosedChannelException e) {
+                // Compaction switched generations (it forced the new segment, which
+                // holds our record) or the store was closed (which forces too)
+                return;
+            }
+            syncedGen = g;
+            syncedEnd = target;
+        }
+    }
+
+    private static String keyOf(String invoiceNumber) {
+        String key = invoiceNumber == null ? "" : invoiceNumber.trim();
+        if (key.isEmpty()) throw new IllegalArgumentException("Invoice number cannot be empty.");
+        return key;
+    }
+
+    private static void writeFully(FileChannel ch, ByteBuffer buf, long pos) throws IOException {
+        while (buf.hasRemaining()) pos += ch.write(buf, pos);
+    }
+
+    private static void readFully(FileChannel ch, ByteBuffer buf, long pos) throws IOException {
+        while (buf.hasRemaining()) {
+            int n = ch.read(buf, pos);
+            if (n < 0) throw new EOFException();
+            pos += n;
+        }
+    }
+
+    // -------------------------------------------------------------------------
+    // Hash Index
+    // -------------------------------------------------------------------------
+
+    private static long hash(String key) {
+        long h = 0xcbf29ce484222325L;          // FNV-1a 64
+        for (int i = 0; i < key.length(); i++) {
+            h ^= key.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        return h;
+    }
+
+    private static int slotPos(int slot) { return IDX_HEADER + slot * SLOT; }
+
+    private long offsetAt(int slot) { return idx.getLong(slotPos(slot) + 8); }
+
+    /** Slot holding key, or -1. Hash matches are confirmed against the stored record's key. */
+    private int slotOf(String key) throws IOException {
+        long h    = hash(key);
+        int  mask = capacity - 1;
+        for (int i = (int) h & mask, n = 0; n < capacity; i = (i + 1) & mask, n++) {
+            long off = offsetAt(i);
+            if (off == EMPTY) return -1;
+            if (off != DELETED && idx.getLong(slotPos(i)) == h && key.equals(keyAt(off))) return i;
+        }
+        return -1;
+    }
+
+    /** True if key's slot points at offset. No disk read: an offset identifies its record. */
+    private boolean isLive(String key, long offset) {
+        long h    = hash(key);
+        int  mask = capacity - 1;
+        for (int i = (int) h & mask, n = 0; n < capacity; i = (i + 1) & mask, n++) {
+            long off = offsetAt(i);
+            if (off == EMPTY) return false;
+            if (off == offset) return true;
+        }
+        return false;
+    }
+
+    private String keyAt(long offset) throws IOException {
+        ByteBuffer head = ByteBuffer.allocate(REC_HEADER + 5);
+        readFully(seg, head, offset);
+        byte[] k = new byte[head.getInt(REC_HEADER + 1)];
+        readFully(seg, ByteBuffer.wrap(k), offset + REC_HEADER + 5);
+        return new String(k, StandardCharsets.UTF_8);
+    }
+
+    /** Points key at offset. Returns the previous offset, or EMPTY if the key is new. */
+    private long indexPut(String key, long offset) throws IOException {
+        int slot = slotOf(key);
+        if (slot >= 0) {
+            long old = offsetAt(slot);
+            idx.putLong(slotPos(slot) + 8, offset);
+            return old;
+        }
+        if ((used + 1) * 2L > capacity) rehash(count * 4L > capacity ? capacity * 2 : capacity);
+        insert(hash(key), offset);
+        count++;
+        return EMPTY;
+    }
+
+    /** Places a key known to be absent in the first free or deleted slot of its probe chain. */
+    private void insert(long h, long offset) {
+        int mask = capacity - 1;
+        int i    = (int) h & mask;
+        while (offsetAt(i) != EMPTY && offsetAt(i) != DELETED) i = (i + 1) & mask;
+        if (offsetAt(i) == EMPTY) used++;
+        idx.putLong(slotPos(i), h);
+        idx.putLong(slotPos(i) + 8, offset);
+    }
+
+    /** Rebuilds the table at newCapacity, dropping deleted slots. */
+    private void rehash(int newCapacity) throws IOException {
+        long[] hashes  = new long[count];
+        long[] offsets = new long[count];
+        int    n       = 0;
+        for (int i = 0; i < capacity; i++) {
+            long off = offsetAt(i);
+            if (off != EMPTY && off != DELETED) {
+                hashes[n]  = idx.getLong(slotPos(i));
+                offsets[n] = off;
+                n++;
+            }
+        }
+        resetIndex(newCapacity);
+        for (int i = 0; i < n; i++) insert(hashes[i], offsets[i]);
+        writeHeader();
+    }
+
+    /** Maps an empty table of the given capacity. Keeps end, garbage and count as they are. */
+    private void resetIndex(int newCapacity) throws IOException {
+        if ((long) IDX_HEADER + (long) newCapacity * SLOT > Integer.MAX_VALUE)
+            throw new IOException("Invoice store index is full");
+        idx      = idxChannel.map(FileChannel.MapMode.READ_WRITE, 0, IDX_HEADER + (long) newCapacity * SLOT);
+        capacity = newCapacity;
+        used     = 0;
+        for (int p = IDX_HEADER; p < idx.capacity(); p += 8) idx.putLong(p, 0L);
+    }
+
+    private void writeHeader() {
+        idx.putInt(0, IDX_MAGIC);
+        idx.putInt(4, VERSION);
+        idx.putInt(8, capacity);
+        idx.putInt(12, count);
+        idx.putInt(16, used);
+        idx.putLong(24, end);
+        idx.putLong(32, garbage);
+    }
+
+    // -------------------------------------------------------------------------
+    // Compaction
+    // -------------------------------------------------------------------------
+
+    /** Starts a background compaction if garbage has passed the threshold. Called without the store lock. */
+    private void maybeCompact() {
+        if (compacting.get()) return;
+        synchronized (this) {
+            if (closed || garbage <= COMPACT_MIN_GARBAGE || garbage * 2 <= end) return;
+        }
+        compactInBackground();
+    }
+
+    private boolean doCompact() throws IOException {
+        int  oldGen;
+        long snapshot;
+        synchronized (this) {
+            if (closed) return false;
+            oldGen   = gen;
+            snapshot = end;
+        }
+
+        File        newSegFile = segmentFile(oldGen + 1);
+        File        newIdxFile = indexFile(oldGen + 1);
+        FileChannel out        = FileChannel.open(newSegFile.toPath(), CREATE, READ, WRITE, TRUNCATE_EXISTING);
+        boolean     switched   = false;
+        try (FileChannel in = FileChannel.open(segmentFile(oldGen).toPath(), READ)) {
+            ByteBuffer h = ByteBuffer.allocate(SEG_HEADER).putInt(SEG_MAGIC).putInt(VERSION);
+            h.flip();
+            writeFully(out, h, 0);
+
+            // Phase 1, unlocked: copy records that are live now. Anything superseded or
+            // deleted while we copy has a newer record after the snapshot.
+            Map<String, long[]> live   = new LinkedHashMap<>(); // key -> {new offset, length}
+            long                outPos = SEG_HEADER;
+            long                pos    = SEG_HEADER;
+            while (pos < snapshot) {
+                Record r = readRecord(in, pos, snapshot);
+                if (r == null) throw new StreamCorruptedException("Corrupt record at offset " + pos);
+                boolean keep;
+                synchronized (this) {
+                    if (closed) return false;
+                    keep = r.type == PUT && isLive(r.key, pos);
+                }
+                if (keep) {
+                    writeFully(out, ByteBuffer.wrap(r.raw), outPos);
+                    live.put(r.key, new long[]{outPos, r.length});
+                    outPos += r.length;
+                }
+                pos += r.length;
+            }
+
+            synchronized (this) {
+                if (closed) return false;
+
+                // Phase 2, locked: carry over whatever was appended during phase 1
+                long newGarbage = 0;
+                for (pos = snapshot; pos < end; ) {
+                    Record r = readRecord(in, pos, end);
+                    if (r == null) throw new StreamCorruptedException("Corrupt record at offset " + pos);
+                    long[] prev = r.type == PUT ? live.put(r.key, new long[]{outPos, r.length}) : live.remove(r.key);
+                    if (prev != null)      newGarbage += prev[1];
+                    if (r.type == DELETE)  newGarbage += r.length;
+                    writeFully(out, ByteBuffer.wrap(r.raw), outPos);
+                    outPos += r.length;
+                    pos    += r.length;
+                }
+                out.force(true);
+                switchGeneration(oldGen + 1, out, live, outPos, newGarbage);
+                switched = true;
+            }
+            segmentFile(oldGen).delete();
+            indexFile(oldGen).delete(); // may fail on Windows while still mapped; retried on next open
+            return true;
+        } finally {
+            if (!switched) {
+                out.close();
+                newSegFile.delete();
+                newIdxFile.delete();
+            }
+        }
+    }
+
+    /**
+     * Builds the index for a freshly written generation and makes it current. On
+     * failure the store keeps using the old generation, which was never modified.
+     */
+    private void switchGeneration(int newGen, FileChannel newSeg, Map<String, long[]> live,
+                                  long newEnd, long newGarbage) throws IOException {
+        FileChannel      oldSeg = seg, oldIdxChannel = idxChannel;
+        MappedByteBuffer oldIdx = idx;
+        int              oldGen = gen, oldCapacity = capacity, oldCount = count, oldUsed = used;
+        long             oldEnd = end, oldGarbage = garbage;
+
+        int cap = INITIAL_CAPACITY;
+        while (cap < live.size() * 2L + 2) cap <<= 1;
+        try {
+            idxChannel = FileChannel.open(indexFile(newGen).toPath(), CREATE, READ, WRITE, TRUNCATE_EXISTING);
+            resetIndex(cap);
+            for (Map.Entry<String, long[]> e : live.entrySet()) insert(hash(e.getKey()), e.getValue()[0]);
+            seg     = newSeg;
+            gen     = newGen;
+            count   = live.size();
+            end     = newEnd;
+            garbage = newGarbage;
+            writeHeader();
+            writeCurrent(newGen);
+        } catch (IOException | RuntimeException e) {
+            if (idxChannel != oldIdxChannel) idxChannel.close();
+            seg = oldSeg; idxChannel = oldIdxChannel; idx = oldIdx; gen = oldGen;
+            capacity = oldCapacity; count = oldCount; used = oldUsed; end = oldEnd; garbage = oldGarbage;
+            throw e;
+        }
+        oldSeg.close();
+        oldIdxChannel.close();
+    }
+
+    // -------------------------------------------------------------------------
+    // Helpers
+    // -------------------------------------------------------------------------
+
+    private void ensureOpen() throws IOException {
+        if (closed) throw new IOException("Invoice store is closed.");
+    }
+
+    private void closeFiles() throws IOException {
+        try {
+            if (seg != null) seg.close();
+        } finally {
+            if (idxChannel != null) idxChannel.close();
+        }
+    }
+
+    // -------------------------------------------------------------------------
+    // Migration Tool
+    // -------------------------------------------------------------------------
+
+    /**
+     * Imports every .rss file in a folder. Files are applied oldest first, so when
+     * several files share an invoice number the most recently saved one wins.
+     * Files without an invoice number are skipped. Returns the number imported.
+     */
+    public int importFolder(File folder, PrintStream log) throws IOException {
+        File[] files = folder.listFiles((d, name) -> name.endsWith(".rss"));
+        if (files == null) throw new IOException("Not a readable folder: " + folder);
+        Arrays.sort(files, Comparator.comparingLong(File::lastModified).thenComparing(File::getName));
+
+        List<BookingSession> batch    = new ArrayList<>();
+        int                  imported = 0;
+        for (File f : files) {
+            try {
+                BookingSession s = BookingSession.loadFrom(f);
+                if (s.getInvoiceNumber() == null || s.getInvoiceNumber().isBlank()) {
+                    log.printf("SKIP  %s: no invoice number%n", f.getName());
+                    continue;
+                }
+                batch.add(s);
+            } catch (Exception e) {
+                log.printf("FAIL  %s: %s%n", f.getName(), e);
+                continue;
+            }
+            if (batch.size() == 500) {
+                putAll(batch);
+                imported += batch.size();
+                batch.clear();
+            }
+        }
+        putAll(batch);
+        return imported + batch.size();
+    }
+
+    public static void main(String[] args) {
+        if (args.length < 2) {
+            System.err.println("Usage: InvoiceStore <store-dir> <rss-folder>...");
+            System.exit(2);
+        }
+        try (InvoiceStore store = open(new File(args[0]))) {
+            long start    = System.nanoTime();
+            int  imported = 0;
+            for (int i = 1; i < args.length; i++) imported += store.importFolder(new File(args[i]), System.out);
+            System.out.printf("Imported %d sessions in %.2f s; store now holds %d invoices%n",
+                              imported, (System.nanoTime() - start) / 1e9, store.size());
+        } catch (IOException e) {
+            System.err.println(e.getMessage());
+            System.exit(1);
+        }
+    }
+}
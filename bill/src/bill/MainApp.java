@@ -3,6 +3,7 @@ package bill;
 import javax.swing.*;
 import java.awt.*;
 import java.io.File;
+import java.util.Arrays;
 
 /**
  * Application entry point, JFrame host, and navigation controller.
@@ -218,24 +219,13 @@ public class MainApp extends JFrame {
         fc.setDialogTitle("Load Session");
         if (fc.showOpenDialog(this) == JFileChooser.APPROVE_OPTION) {
             try {
-                BookingSession loaded = BookingSession.loadFrom(fc.getSelectedFile());
-                // Copy all loaded data into our shared session object
-                session.reset();
-                session.setCustomerDetails(
-                    loaded.getCustomerName(), loaded.getContactNumber(),
-                    loaded.getAddress(), loaded.getInvoiceNumber(), loaded.getBookingDate());
-                session.setCompanyDetails(
-                    loaded.getCompanyName(), loaded.getCompanyTagline(),
-                    loaded.getCompanyEmail(), loaded.getCompanyPhone());
-                session.setGstRate(loaded.getGstRatePercent());
-                for (BookingSession.FlightBookingData f : loaded.getFlights()) {
-                    session.addFlight(f.pnr, f.source, f.dest, f.fare, f.passengers);
-                }
-                for (BookingSession.CarBookingData c : loaded.getCars()) {
-                    session.addCar(c.carNo, c.source, c.dest, c.fare);
-                }
+                BookingSession loaded  = BookingSession.loadFrom(fc.getSelectedFile());
+                String         skipped = loadIntoSession(loaded);
                 showScreen(CUSTOMER_PANEL);
-                JOptionPane.showMessageDialog(this, "Session loaded.", "Loaded", JOptionPane.INFORMATION_MESSAGE);
+                if (skipped == null)
+                    JOptionPane.showMessageDialog(this, "Session loaded.", "Loaded", JOptionPane.INFORMATION_MESSAGE);
+                else
+                    JOptionPane.showMessageDialog(this, "Session loaded.\n" + skipped, "Loaded", JOptionPane.WARNING_MESSAGE);
             } catch (Exception ex) {
                 JOptionPane.showMessageDialog(this, "Load failed: " + ex.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
             }
@@ -248,6 +238,38 @@ public class MainApp extends JFrame {
 
     public BookingSession getSession() { return session; }
 
+    /**
+     * Replaces the shared session's contents with a loaded session's. Booking lines
+     * go in through addFlights / addCars: one event per list, and a line that breaks
+     * the current rules is skipped instead of aborting the load with the session
+     * half filled. Returns a description of the skipped lines, or null if all loaded.
+     */
+    public String loadIntoSession(BookingSession loaded) {
+        session.reset();
+        session.setCustomerDetails(
+            loaded.getCustomerName(), loaded.getContactNumber(),
+            loaded.getAddress(), loaded.getInvoiceNumber(), loaded.getBookingDate());
+        session.setCompanyDetails(
+            loaded.getCompanyName(), loaded.getCompanyTagline(),
+            loaded.getCompanyEmail(), loaded.getCompanyPhone());
+        session.setGstRate(loaded.getGstRatePercent());
+        ValidationReport flights = session.addFlights(loaded.getFlights());
+        ValidationReport cars    = session.addCars(loaded.getCars());
+        if (flights.isEmpty() && cars.isEmpty()) return null;
+
+        StringBuilder sb = new StringBuilder().append(flights.size() + cars.size())
+                                              .append(" line(s) could not be loaded and were skipped:\n");
+        int shown = 0;
+        for (int i = 0; i < flights.size() && shown < 10; i++, shown++)
+            sb.append("\nFlight ").append(flights.row(i) + 1).append(" (")
+              .append(loaded.getFlight(flights.row(i)).pnr).append("): ").append(flights.rule(i).message);
+        for (int i = 0; i < cars.size() && shown < 10; i++, shown++)
+            sb.append("\nCar ").append(cars.row(i) + 1).append(" (")
+              .append(loaded.getCar(cars.row(i)).carNo).append("): ").append(cars.rule(i).message);
+        if (flights.size() + cars.size() > shown) sb.append("\n… and ").append(flights.size() + cars.size() - shown).append(" more");
+        return sb.toString();
+    }
+
     public void resetBooking() {
         session.reset();
         AppSettings.getInstance().applyTo(session);
@@ -259,6 +281,21 @@ public class MainApp extends JFrame {
     // -------------------------------------------------------------------------
 
     public static void main(String[] args) {
+        // Headless batch export: MainApp --export <sessions-dir> [output-dir] [--threads N]
+        if (args.length > 0 && args[0].equals("--export")) {
+            BatchExporter.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+        // Import .rss folders into an invoice store: MainApp --import <store-dir> <rss-folder>...
+        if (args.length > 0 && args[0].equals("--import")) {
+            InvoiceStore.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+        // Headless HTTP service: MainApp --serve [--port N] [--renders N] [--queue N]
+        if (args.length > 0 && args[0].equals("--serve")) {
+            InvoiceServer.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
         SwingUtilities.invokeLater(() -> {
             try {
                 UIManager.setLookAndFeel(UIManager.getSystemLookAndFeelClassName());
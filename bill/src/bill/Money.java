@@ -0,0 +1,201 @@
+package bill;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * An amount of rupees held as a long unscaled value and a decimal scale, the
+ * same representation BigDecimal uses, but without the allocation: 12500.5 is
+ * 125005 at scale 1, 99 is 99 at scale 0. Typical amounts are whole paise
+ * (scale 2), which {@link #ofPaise} and {@link #paise} deal in directly.
+ *
+ * Every operation gives the value and scale BigDecimal would, so amounts print
+ * and compare exactly as they did when fares and totals were BigDecimals:
+ * <ul>
+ *   <li>{@link #plus} / {@link #minus} — scale is the larger of the two, like add / subtract</li>
+ *   <li>{@link #percent} — {@code amount.multiply(rate).divide(100, 2, HALF_UP)}</li>
+ *   <li>{@link #toPlainString} — BigDecimal.toPlainString, so a fare entered as 99 shows as "99"</li>
+ *   <li>{@link #equals} — value and scale, like BigDecimal.equals; compareTo compares value only</li>
+ * </ul>
+ * Negative scales (1E+3) are stored at scale 0, which prints the same. Scales
+ * above {@link #MAX_SCALE} and values that do not fit in a long are rejected
+ * with ArithmeticException. MoneyCheck tests all of this against BigDecimal.
+ */
+public final class Money implements Comparable<Money> {
+
+    /** Largest scale held; finer amounts are rejected rather than rounded. */
+    public static final int MAX_SCALE = 18;
+
+    /** Zero at scale 0, like BigDecimal.ZERO. */
+    public static final Money ZERO = new Money(0, 0);
+
+    private static final Money ZERO_PAISE = new Money(0, 2);
+
+    private static final long[] POW10 = {
+        1L, 10L, 100L, 1_000L, 10_000L, 100_000L, 1_000_000L, 10_000_000L, 100_000_000L,
+        1_000_000_000L, 10_000_000_000L, 100_000_000_000L, 1_000_000_000_000L,
+        10_000_000_000_000L, 100_000_000_000_000L, 1_000_000_000_000_000L,
+        10_000_000_000_000_000L, 100_000_000_000_000_000L, 1_000_000_000_000_000_000L
+    };
+
+    private final long unscaled;
+    private final int  scale;
+
+    private Money(long unscaled, int scale) {
+        this.unscaled = unscaled;
+        this.scale    = scale;
+    }
+
+    /** paise / 100, at scale 2. */
+    public static Money ofPaise(long paise) {
+        return paise == 0 ? ZERO_PAISE : new Money(paise, 2);
+    }
+
+    /** unscaled × 10^-scale, like BigDecimal.valueOf(unscaled, scale). */
+    public static Money of(long unscaled, int scale) {
+        if (scale < 0) return new Money(Math.multiplyExact(unscaled, pow10(-scale)), 0);
+        if (scale > MAX_SCALE) throw new ArithmeticException("Scale " + scale + " is finer than Money holds");
+        return unscaled == 0 && scale == 0 ? ZERO : new Money(unscaled, scale);
+    }
+
+    /**
+     * Exact conversion, keeping the scale. Throws ArithmeticException if the scale
+     * is above MAX_SCALE or the unscaled value does not fit in a long.
+     */
+    public static Money of(BigDecimal rupees) {
+        if (rupees.scale() < 0) rupees = rupees.setScale(0);
+        if (rupees.scale() > MAX_SCALE) throw new ArithmeticException("Scale " + rupees.scale() + " is finer than Money holds");
+        return of(rupees.unscaledValue().longValueExact(), rupees.scale());
+    }
+
+    /** Converts, rounding HALF_UP to the nearest paisa. */
+    public static Money rounded(BigDecimal rupees) {
+        return ofPaise(rupees.setScale(2, RoundingMode.HALF_UP).unscaledValue().longValueExact());
+    }
+
+    public long unscaledValue() { return unscaled; }
+    public int  scale()         { return scale; }
+
+    /** The amount in whole paise. Throws ArithmeticException if it has a non-zero digit beyond the paisa. */
+    public long paise() {
+        if (scale <= 2) return Math.multiplyExact(unscaled, POW10[2 - scale]);
+        long d = POW10[scale - 2];
+        if (unscaled % d != 0) throw new ArithmeticException(toPlainString() + " is not a whole number of paise");
+        return unscaled / d;
+    }
+
+    public Money plus(Money other) {
+        if (scale == other.scale) return of(Math.addExact(unscaled, other.unscaled), scale);
+        int s = Math.max(scale, other.scale);
+        return of(Math.addExact(rescaled(s), other.rescaled(s)), s);
+    }
+
+    public Money minus(Money other) {
+        if (scale == other.scale) return of(Math.subtractExact(unscaled, other.unscaled), scale);
+        int s = Math.max(scale, other.scale);
+        return of(Math.subtractExact(rescaled(s), other.rescaled(s)), s);
+    }
+
+    /**
+     * The same value at a smaller or larger scale, like
+     * {@code setScale(newScale, UNNECESSARY)}. Throws ArithmeticException if
+     * lowering the scale would drop a non-zero digit.
+     */
+    public Money withScale(int newScale) {
+        if (newScale == scale) return this;
+        if (newScale > scale) return of(rescaled(newScale), newScale);
+        long d = pow10(scale - newScale);
+        if (unscaled % d != 0) throw new ArithmeticException(toPlainString() + " has digits beyond scale " + newScale);
+        return of(unscaled / d, newScale);
+    }
+
+    public boolean isPositive() { return unscaled > 0; }
+    public int     signum()     { return Long.signum(unscaled); }
+
+    /** ratePercent % of this amount at scale 2, rounded HALF_UP. */
+    public Money percent(BigDecimal ratePercent) {
+        long rate;
+        int  rateScale = ratePercent.scale();
+        try {
+            rate = ratePercent.unscaledValue().longValueExact();
+            if (rateScale < 0) {
+                rate      = Math.multiplyExact(rate, pow10(-rateScale));
+                rateScale = 0;
+            }
+            // unscaled × rate has scale (scale + rateScale); as a percentage in paise
+            // that is a division by 10^(scale + rateScale + 2 - 2)
+            int shift = scale + rateScale;
+            if (shift < POW10.length) return ofPaise(divideHalfUp(Math.multiplyExact(unscaled, rate), POW10[shift]));
+        } catch (ArithmeticException overflow) {
+            // fall through to the exact slow path
+        }
+        return ofPaise(toBigDecimal().multiply(ratePercent)
+                                     .divide(BigDecimal.valueOf(100), 2, RoundingMode.HALF_UP)
+                                     .unscaledValue().longValueExact());
+    }
+
+    /** n / d rounded HALF_UP (ties away from zero), for d > 0. */
+    private static long divideHalfUp(long n, long d) {
+        long q = n / d;
+        long r = n % d;
+        if (Math.abs(r) >= d - Math.abs(r)) q += Long.signum(n);
+        return q;
+    }
+
+    private long rescaled(int newScale) {
+        return Math.multiplyExact(unscaled, pow10(newScale - scale));
+    }
+
+    private static long pow10(int n) {
+        if (n >= POW10.length) throw new ArithmeticException("Scale out of range");
+        return POW10[n];
+    }
+
+    public BigDecimal toBigDecimal() {
+        return BigDecimal.valueOf(unscaled, scale);
+    }
+
+    /** Same text as toBigDecimal().toPlainString(), e.g. "99", "12500.50" or "-0.05". */
+    public String toPlainString() {
+        if (scale == 0) return Long.toString(unscaled);
+        String digits = Long.toString(Math.abs(unscaled));
+        StringBuilder sb = new StringBuilder(digits.length() + scale + 3);
+        if (unscaled < 0) sb.append('-');
+        int point = digits.length() - scale;
+        if (point <= 0) {
+            sb.append("0.");
+            for (int i = point; i < 0; i++) sb.append('0');
+            sb.append(digits);
+        } else {
+            sb.append(digits, 0, point).append('.').append(digits, point, digits.length());
+        }
+        return sb.toString();
+    }
+
+    @Override
+    public int compareTo(Money other) {
+        if (scale == other.scale) return Long.compare(unscaled, other.unscaled);
+        int s = Math.max(scale, other.scale);
+        try {
+            return Long.compare(rescaled(s), other.rescaled(s));
+        } catch (ArithmeticException overflow) {
+            return toBigDecimal().compareTo(other.toBigDecimal());
+        }
+    }
+
+    /** Equal value and scale, like BigDecimal.equals: 99 and 99.00 are not equal. */
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof Money && ((Money) o).unscaled == unscaled && ((Money) o).scale == scale;
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * Long.hashCode(unscaled) + scale;
+    }
+
+    @Override
+    public String toString() {
+        return toPlainString();
+    }
+}
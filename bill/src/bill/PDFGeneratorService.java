@@ -1,17 +1,39 @@
 package bill;
 
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.cos.COSStream;
 import org.apache.pdfbox.pdmodel.*;
 import org.apache.pdfbox.pdmodel.common.PDRectangle;
-import org.apache.pdfbox.pdmodel.font.PDType1Font;
-import org.apache.pdfbox.pdmodel.font.Standard14Fonts;
+import org.apache.pdfbox.pdmodel.common.PDStream;
 import org.apache.pdfbox.pdmodel.graphics.color.PDColor;
 import org.apache.pdfbox.pdmodel.graphics.color.PDDeviceRGB;
+import org.apache.pdfbox.pdmodel.interactive.annotation.PDAppearanceStream;
 
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.regex.Pattern;
+import java.util.zip.DeflaterOutputStream;
 
 /**
  * Generates a professional A4 PDF invoice using Apache PDFBox.
@@ -22,6 +44,18 @@ import java.util.List;
  *  - GST line item in the totals section
  *  - Company name/email/phone/tagline read from session (configurable)
  *  - Page numbering in footer
+ *  - Stateless and reentrant: each call keeps its document, session and layout
+ *    in its own RenderContext, so one instance can render many invoices in
+ *    parallel and nothing stays reachable after generatePDF returns
+ *  - Fonts are built once per document and drawing goes through PdfCanvas,
+ *    which skips redundant colour / line-width / font operators
+ *  - Two-pass layout: pagination is measured first, so each page is drawn
+ *    completely (footer included) and its stream closed before the next opens
+ *  - Optional parallel mode: pages of large invoices are rendered concurrently
+ *    on a ForkJoinPool and assembled into the document in order
+ *  - Streams to any OutputStream / WritableByteChannel; files go through a FileChannel
+ *    into a temp file that replaces the target only once complete
+ *  - Optional per-page progress callback; interrupting the rendering thread cancels
  */
 public class PDFGeneratorService {
 
@@ -32,6 +66,10 @@ public class PDFGeneratorService {
     private static final PDColor LIGHT_BG      = pdfRgb(0.95f, 0.97f, 0.98f);
     private static final PDColor WHITE         = pdfRgb(1f,    1f,    1f);
     private static final PDColor MUTED         = pdfRgb(0.50f, 0.55f, 0.58f);
+    private static final PDColor HEADER_SUBTLE = pdfRgb(0.85f, 0.90f, 0.95f);
+
+    // Characters outside PDFBox's WinAnsiEncoding (compiled once, shared by all renders)
+    private static final Pattern NON_WIN_ANSI = Pattern.compile("[^\\x20-\\x7E\\xA0-\\xFF]");
 
     private static final float MARGIN     = 45f;
     private static final float PAGE_W     = PDRectangle.A4.getWidth();
@@ -42,114 +80,484 @@ public class PDFGeneratorService {
     private static final float HEADER_H   = 85f;
     private static final float FOOTER_H   = 50f;
     private static final float SAFE_TOP   = PAGE_H - HEADER_H - 10f;  // First page content start y
+    private static final float CONT_TOP   = PAGE_H - 45f;             // Continuation page content start y
     private static final float SAFE_BOT   = FOOTER_H + 10f;           // All pages content bottom y
 
-    private PDDocument           doc;
-    private BookingSession       session;
-    private int                  pageCount;
-    private List<PDPage>         pages;
-    private List<PDPageContentStream> streams;
+    // ---- Table columns ----
+    private static final String[] FLIGHT_COLS = {"PNR", "Route", "Pax", "Fare"};
+    private static final float[]  FLIGHT_XS   = {MARGIN, MARGIN + 100, MARGIN + 290, MARGIN + 360};
+    private static final String[] CAR_COLS    = {"Vehicle No", "Route", "Fare"};
+    private static final float[]  CAR_XS      = {MARGIN, MARGIN + 130, MARGIN + 360};
+
+    // Invoices shorter than this are rendered sequentially even in parallel mode
+    private static final int PARALLEL_MIN_PAGES = 4;
+
+    /**
+     * Identifies the output of this renderer for PdfCache keys. Bump it whenever a
+     * change alters the bytes produced for the same session, so stale cached PDFs
+     * are never served.
+     */
+    public static final int RENDER_VERSION = 1;
+
+    /** Default size of the write buffer placed in front of the output sink. */
+    public static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+    private final ForkJoinPool pool;       // null = sequential rendering
+    private final int          bufferSize;
+
+    /** Renders pages one after another on the calling thread. */
+    public PDFGeneratorService() {
+        this(null);
+    }
+
+    /**
+     * Renders the pages of large invoices concurrently on the given pool.
+     * Short invoices are still rendered sequentially, where forking would cost more than it saves.
+     */
+    public PDFGeneratorService(ForkJoinPool pool) {
+        this(pool, DEFAULT_BUFFER_SIZE);
+    }
 
-    // Current draw state
-    private int   curPage;
-    private float y;
+    /**
+     * @param pool       pool for parallel page rendering, or null for sequential
+     * @param bufferSize bytes buffered before each write to the output sink
+     */
+    public PDFGeneratorService(ForkJoinPool pool, int bufferSize) {
+        if (bufferSize <= 0) throw new IllegalArgumentException("Buffer size must be positive.");
+        this.pool       = pool;
+        this.bufferSize = bufferSize;
+    }
+
+    /**
+     * Reports rendering progress and lets the caller cancel. Called on the
+     * rendering thread after each page is complete.
+     */
+    public interface ProgressListener {
+        void pageRendered(int pagesDone, int totalPages);
+    }
 
+    /** Writes the invoice to a file through a FileChannel, replacing any existing content. */
     public void generatePDF(BookingSession session, File file) throws IOException {
-        this.session = session;
-        this.doc     = new PDDocument();
-        this.pages   = new ArrayList<>();
-        this.streams = new ArrayList<>();
+        generatePDF(session, file, null);
+    }
 
-        // First page
-        newPage();
-        drawHeader();
-        drawInvoiceMeta();
+    /**
+     * Writes the invoice to a temp file next to the target and moves it into place
+     * once complete, so the target is never left half-written: if rendering fails
+     * or is cancelled the previous file, if any, is untouched.
+     *
+     * Rendering can be cancelled by interrupting the calling thread; it stops at
+     * the next page boundary with an InterruptedIOException.
+     *
+     * @param progress notified after each page, or null
+     */
+    public void generatePDF(BookingSession session, File file, ProgressListener progress) throws IOException {
+        replaceFile(file, channel -> generatePDF(session, Channels.newOutputStream(channel), progress));
+    }
 
-        // Body
-        if (!session.getFlights().isEmpty()) drawFlightSection();
-        if (!session.getCars().isEmpty())    drawCarSection();
+    /**
+     * Writes an already rendered PDF to a file, with the same temp-file-and-move
+     * guarantee as {@link #generatePDF(BookingSession, File, ProgressListener)}.
+     */
+    public static void writePDF(byte[] pdf, File file) throws IOException {
+        replaceFile(file, channel -> {
+            ByteBuffer buf = ByteBuffer.wrap(pdf);
+            while (buf.hasRemaining()) channel.write(buf);
+        });
+    }
 
-        drawTotals();
+    private interface ChannelWriter {
+        void writeTo(FileChannel channel) throws IOException;
+    }
 
-        // Footers on all pages
-        for (int i = 0; i < pages.size(); i++) {
-            drawFooter(streams.get(i), i + 1, pages.size());
+    private static void replaceFile(File file, ChannelWriter writer) throws IOException {
+        Path target = file.toPath().toAbsolutePath();
+        // Not Files.createTempFile: that makes the file owner-only, and the move would carry that over
+        Path temp   = target.resolveSibling("." + target.getFileName() + "."
+                                            + Long.toHexString(ThreadLocalRandom.current().nextLong()) + ".part");
+        try {
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE, StandardOpenOption.CREATE_NEW)) {
+                writer.writeTo(channel);
+                channel.force(false);
+            }
+            checkCancelled();
+            try {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
         }
+    }
 
-        // Close all streams
-        for (PDPageContentStream cs : streams) cs.close();
+    /** Writes the invoice to the channel. The channel is left open. */
+    public void generatePDF(BookingSession session, WritableByteChannel channel) throws IOException {
+        generatePDF(session, Channels.newOutputStream(channel));
+    }
 
-        doc.save(file);
-        doc.close();
+    /**
+     * Writes the invoice straight to the stream through a single buffer of the
+     * configured size, with no temp file or intermediate byte array. The stream
+     * is flushed but left open, so callers can keep writing (e.g. zip entries).
+     */
+    public void generatePDF(BookingSession session, OutputStream out) throws IOException {
+        generatePDF(session, out, null);
+    }
+
+    /**
+     * As {@link #generatePDF(BookingSession, OutputStream)}, reporting each finished
+     * page to progress (may be null). Interrupting the calling thread cancels at the
+     * next page boundary with an InterruptedIOException; nothing is written to the
+     * stream until every page has been rendered.
+     */
+    public void generatePDF(BookingSession session, OutputStream out, ProgressListener progress) throws IOException {
+        try (PDDocument doc = new PDDocument()) {
+            render(new RenderContext(doc, session, progress));
+            checkCancelled();
+
+            BufferedOutputStream buffered = new BufferedOutputStream(out, bufferSize);
+            doc.save(buffered);
+            buffered.flush();
+        }
+    }
+
+    private void render(RenderContext ctx) throws IOException {
+        // Pass 1: measure
+        int[] pageStarts = ctx.layout.paginate();
+
+        // Pass 2: draw
+        if (pool != null && pageStarts.length >= PARALLEL_MIN_PAGES) {
+            renderParallel(ctx, pageStarts);
+        } else {
+            for (int p = 0; p < pageStarts.length; p++) {
+                checkCancelled();
+                renderPage(ctx, pageStarts, p);
+                ctx.pageDone(pageStarts.length);
+            }
+        }
+    }
+
+    private static void checkCancelled() throws InterruptedIOException {
+        if (Thread.interrupted()) throw new InterruptedIOException("PDF export cancelled");
+    }
+
+    // -------------------------------------------------------------------------
+    // Render Context
+    // -------------------------------------------------------------------------
+
+    /**
+     * Mutable state of a single render. Created per generatePDF call and never
+     * shared between threads; everything on the service itself is immutable.
+     *
+     * session is a read-only copy taken when the render starts (or the caller's
+     * session itself if that is already a read-only snapshot), and every value
+     * drawn, from the company header to the totals, is read from it. An edit made
+     * to the caller's session mid-render therefore cannot mix old and new values
+     * in one document. The copy must still be taken on the thread that owns the
+     * session, i.e. generatePDF has to be called there or given a copy().
+     */
+    private static final class RenderContext {
+        final PDDocument      doc;
+        final BookingSession  session;
+        final Layout          layout;
+        final PdfCanvas.Fonts fonts = new PdfCanvas.Fonts();
+        final ProgressListener progress;   // may be null
+        int pagesDone;
+
+        RenderContext(PDDocument doc, BookingSession session, ProgressListener progress) {
+            this.doc      = doc;
+            this.session  = session.isReadOnly() ? session : session.readOnlyCopy();
+            this.layout   = new Layout(this.session);
+            this.progress = progress;
+        }
+
+        /** Called on the thread that owns the document, once per page added to it. */
+        void pageDone(int totalPages) {
+            pagesDone++;
+            if (progress != null) progress.pageRendered(pagesDone, totalPages);
+        }
     }
 
     // -------------------------------------------------------------------------
-    // Page Management
+    // Layout (measuring pass)
     // -------------------------------------------------------------------------
 
-    private void newPage() throws IOException {
+    /**
+     * The invoice body as a flat sequence of layout items: the meta block, then for
+     * each non-empty section a section header, table header, one item per booking,
+     * subtotal rule and subtotal line, and finally the totals block.
+     *
+     * Items are addressed by index and never materialised, so a 10k-line invoice
+     * costs no more memory to lay out than a single page. Each item has the space it
+     * needs free before it is drawn and the height it consumes; pagination is
+     * computed from those alone, before anything is drawn.
+     */
+    private static final class Layout {
+        static final int META = 0, SECTION = 1, TABLE_HEAD = 2, ROW = 3, RULE = 4, SUBTOTAL = 5, TOTALS = 6;
+
+        final List<BookingSession.FlightBookingData> flights;
+        final List<BookingSession.CarBookingData>    cars;
+        final int carStart;  // index of the first car-section item
+        final int totalsAt;  // index of the totals block
+        final int size;
+
+        /** session must be read-only, so its lists never change under the layout. */
+        Layout(BookingSession session) {
+            this.flights  = session.getFlights();
+            this.cars     = session.getCars();
+            this.carStart = 1 + sectionItems(flights.size());
+            this.totalsAt = carStart + sectionItems(cars.size());
+            this.size     = totalsAt + 1;
+        }
+
+        private static int sectionItems(int rows) {
+            return rows == 0 ? 0 : rows + 4; // header, table header, rows, rule, subtotal
+        }
+
+        boolean inFlights(int i) { return i < carStart; }
+
+        int kind(int i) {
+            if (i == 0)        return META;
+            if (i == totalsAt) return TOTALS;
+            int off  = i - (inFlights(i) ? 1 : carStart);
+            int rows = inFlights(i) ? flights.size() : cars.size();
+            if (off == 0)        return SECTION;
+            if (off == 1)        return TABLE_HEAD;
+            if (off < rows + 2)  return ROW;
+            if (off == rows + 2) return RULE;
+            return SUBTOTAL;
+        }
+
+        /** Booking index within its section for a ROW item. */
+        int row(int i) { return i - (inFlights(i) ? 1 : carStart) - 2; }
+
+        /** Space that must be free above SAFE_BOT before the item is drawn. */
+        float need(int i) {
+            switch (kind(i)) {
+                case SECTION:    return 40;
+                case TABLE_HEAD: return LINE_SM + 6;
+                case ROW:        return LINE_SM;
+                case TOTALS:     return 90;
+                default:         return 0;
+            }
+        }
+
+        /** Vertical space the item consumes. */
+        float height(int i) {
+            switch (kind(i)) {
+                case META:       return LINE_SM * 3 + LINE_MD;
+                case SECTION:    return LINE_MD + 6;
+                case TABLE_HEAD: return LINE_SM + 4;
+                case ROW:        return LINE_SM;
+                case RULE:       return LINE_SM;
+                case SUBTOTAL:   return LINE_MD;
+                default:         return 10 + LINE_MD * 3 + 40;
+            }
+        }
+
+        /** Returns the index of the first item on each page. */
+        int[] paginate() {
+            int[] starts = new int[16];
+            int   pages  = 1;
+            float y      = SAFE_TOP;
+            for (int i = 0; i < size; i++) {
+                if (y - need(i) < SAFE_BOT) {
+                    if (pages == starts.length) starts = Arrays.copyOf(starts, pages * 2);
+                    starts[pages++] = i;
+                    y = CONT_TOP;
+                }
+                y -= height(i);
+            }
+            return Arrays.copyOf(starts, pages);
+        }
+    }
+
+    // -------------------------------------------------------------------------
+    // Page Rendering (drawing pass)
+    // -------------------------------------------------------------------------
+
+    /** Draws one complete page straight into the document and closes its stream. */
+    private void renderPage(RenderContext ctx, int[] pageStarts, int pageIndex) throws IOException {
         PDPage page = new PDPage(PDRectangle.A4);
-        doc.addPage(page);
-        pages.add(page);
-        PDPageContentStream cs = new PDPageContentStream(doc, page);
-        streams.add(cs);
-        curPage = pages.size() - 1;
-        pageCount = pages.size();
+        ctx.doc.addPage(page);
+        try (PdfCanvas cs = new PdfCanvas(new PDPageContentStream(ctx.doc, page), ctx.fonts)) {
+            drawPage(ctx, cs, pageStarts, pageIndex);
+        }
+    }
 
-        if (curPage == 0) {
+    /** Header, the page's slice of layout items, and footer. */
+    private void drawPage(RenderContext ctx, PdfCanvas cs, int[] pageStarts, int pageIndex) throws IOException {
+        int   totalPages = pageStarts.length;
+        int   to         = pageIndex + 1 < totalPages ? pageStarts[pageIndex + 1] : ctx.layout.size;
+        float y;
+        if (pageIndex == 0) {
+            drawHeader(ctx, cs);
             y = SAFE_TOP;
         } else {
-            // Non-first pages: draw a continuation header strip
-            cs.setNonStrokingColor(BLUE_PRIMARY);
-            cs.addRect(0, PAGE_H - 28, PAGE_W, 28);
-            cs.fill();
-            text(cs, session.getCompanyName() + "  —  Invoice " + session.getInvoiceNumber(),
-                 MARGIN, PAGE_H - 18, 9, true, WHITE);
-            y = PAGE_H - 45;
+            drawContinuationHeader(ctx, cs);
+            y = CONT_TOP;
+        }
+        for (int i = pageStarts[pageIndex]; i < to; i++) {
+            drawItem(ctx, cs, i, y);
+            y -= ctx.layout.height(i);
+        }
+        drawFooter(ctx, cs, pageIndex + 1, totalPages);
+    }
+
+    // -------------------------------------------------------------------------
+    // Parallel Rendering
+    // -------------------------------------------------------------------------
+
+    /**
+     * Splits the pages into contiguous slices, renders each slice's content streams
+     * on the pool, then adds the pages to the document in order on this thread.
+     *
+     * PDDocument is not thread-safe, so workers never touch it: each slice writes
+     * Flate-compressed content bytes against its own PDResources and fonts. Both
+     * register regular then bold, so the /F1 and /F2 names in the bytes match the
+     * single resource dictionary that all assembled pages share.
+     */
+    private void renderParallel(RenderContext ctx, int[] pageStarts) throws IOException {
+        int totalPages = pageStarts.length;
+        int slice      = Math.max(1, (totalPages + pool.getParallelism() * 2 - 1) / (pool.getParallelism() * 2));
+
+        List<ForkJoinTask<byte[][]>> tasks = new ArrayList<>();
+        for (int from = 0; from < totalPages; from += slice) {
+            int start = from;
+            int end   = Math.min(from + slice, totalPages);
+            tasks.add(pool.submit(() -> renderSlice(ctx, pageStarts, start, end)));
+        }
+
+        PDResources shared = pageResources(ctx.fonts);
+        try {
+            for (ForkJoinTask<byte[][]> task : tasks) {
+                for (byte[] content : await(task)) {
+                    checkCancelled();
+                    addCompressedPage(ctx.doc, shared, content);
+                    ctx.pageDone(totalPages);
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            for (ForkJoinTask<byte[][]> task : tasks) task.cancel(true);
+            throw e;
+        }
+    }
+
+    private byte[][] renderSlice(RenderContext ctx, int[] pageStarts, int from, int to) throws IOException {
+        PdfCanvas.Fonts fonts = new PdfCanvas.Fonts();
+        byte[][] out = new byte[to - from][];
+        for (int p = from; p < to; p++) {
+            PDAppearanceStream target = new PDAppearanceStream(new COSStream());
+            target.setResources(pageResources(fonts));
+            ByteArrayOutputStream buf = new ByteArrayOutputStream(4096);
+            try (PdfCanvas cs = new PdfCanvas(
+                    new PDPageContentStream(ctx.doc, target, new DeflaterOutputStream(buf)), fonts)) {
+                drawPage(ctx, cs, pageStarts, p);
+            }
+            out[p - from] = buf.toByteArray();
         }
+        return out;
     }
 
-    private PDPageContentStream cs() { return streams.get(curPage); }
+    private static PDResources pageResources(PdfCanvas.Fonts fonts) {
+        PDResources res = new PDResources();
+        res.add(fonts.regular);  // F1
+        res.add(fonts.bold);     // F2
+        return res;
+    }
 
-    /** Advances y by delta; creates a new page if we'd overflow. */
-    private void advanceY(float delta) throws IOException {
-        y -= delta;
-        if (y < SAFE_BOT) newPage();
+    private static void addCompressedPage(PDDocument doc, PDResources resources, byte[] content) throws IOException {
+        COSStream stream = doc.getDocument().createCOSStream();
+        stream.setItem(COSName.FILTER, COSName.FLATE_DECODE);
+        try (OutputStream os = stream.createRawOutputStream()) {
+            os.write(content);
+        }
+        PDPage page = new PDPage(PDRectangle.A4);
+        page.setResources(resources);
+        page.setContents(new PDStream(stream));
+        doc.addPage(page);
+    }
+
+    private static <T> T await(ForkJoinTask<T> task) throws IOException {
+        try {
+            return task.get();
+        } catch (InterruptedException e) {
+            throw new InterruptedIOException("PDF export cancelled");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException)      throw (IOException) cause;
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            throw new IOException("PDF rendering failed", cause);
+        }
+    }
+
+    private void drawItem(RenderContext ctx, PdfCanvas cs, int i, float y) throws IOException {
+        Layout  layout  = ctx.layout;
+        boolean flights = layout.inFlights(i);
+        switch (layout.kind(i)) {
+            case Layout.META:
+                drawInvoiceMeta(ctx, cs, y);
+                break;
+            case Layout.SECTION:
+                drawSectionHeader(cs, flights ? "FLIGHT BOOKINGS" : "CAR RENTALS", y);
+                break;
+            case Layout.TABLE_HEAD:
+                if (flights) drawTableHeader(cs, FLIGHT_COLS, FLIGHT_XS, y);
+                else         drawTableHeader(cs, CAR_COLS,    CAR_XS,    y);
+                break;
+            case Layout.ROW:
+                if (flights) drawFlightRow(cs, layout.flights.get(layout.row(i)), y);
+                else         drawCarRow(cs,    layout.cars.get(layout.row(i)),    y);
+                break;
+            case Layout.RULE:
+                hline(cs, y + 4, MUTED, 0.5f);
+                break;
+            case Layout.SUBTOTAL:
+                if (flights) drawSubtotal(cs, "Flight Subtotal:", MARGIN + 250, ctx.session.getFlightTotal().toPlainString(), y);
+                else         drawSubtotal(cs, "Car Subtotal:",    MARGIN + 280, ctx.session.getCarTotal().toPlainString(),    y);
+                break;
+            default:
+                drawTotals(ctx, cs, y);
+        }
     }
 
     // -------------------------------------------------------------------------
     // Header
     // -------------------------------------------------------------------------
 
-    private void drawHeader() throws IOException {
-        PDPageContentStream cs = cs();
-
+    private void drawHeader(RenderContext ctx, PdfCanvas cs) throws IOException {
         // Blue band
-        cs.setNonStrokingColor(BLUE_PRIMARY);
-        cs.addRect(0, PAGE_H - HEADER_H, PAGE_W, HEADER_H);
-        cs.fill();
+        cs.fillRect(0, PAGE_H - HEADER_H, PAGE_W, HEADER_H, BLUE_PRIMARY);
 
         // Logo text
         text(cs, "RST", MARGIN, PAGE_H - 30, 28, true, WHITE);
 
         // Company name
-        text(cs, session.getCompanyName(), MARGIN + 70, PAGE_H - 22, 20, true, WHITE);
+        text(cs, ctx.session.getCompanyName(), MARGIN + 70, PAGE_H - 22, 20, true, WHITE);
 
         // Tagline + contact
-        text(cs, session.getCompanyTagline(), MARGIN + 70, PAGE_H - 40, 10, false, pdfRgb(0.85f, 0.9f, 0.95f));
-        text(cs, session.getCompanyEmail() + "   " + session.getCompanyPhone(),
-             MARGIN + 70, PAGE_H - 55, 9, false, pdfRgb(0.85f, 0.9f, 0.95f));
+        text(cs, ctx.session.getCompanyTagline(), MARGIN + 70, PAGE_H - 40, 10, false, HEADER_SUBTLE);
+        text(cs, ctx.session.getCompanyEmail() + "   " + ctx.session.getCompanyPhone(),
+             MARGIN + 70, PAGE_H - 55, 9, false, HEADER_SUBTLE);
 
         // INVOICE label (right)
         text(cs, "INVOICE", PAGE_W - MARGIN - 80, PAGE_H - 35, 22, true, WHITE);
     }
 
+    /** Non-first pages: a slim strip repeating company and invoice number. */
+    private void drawContinuationHeader(RenderContext ctx, PdfCanvas cs) throws IOException {
+        cs.fillRect(0, PAGE_H - 28, PAGE_W, 28, BLUE_PRIMARY);
+        text(cs, ctx.session.getCompanyName() + "  —  Invoice " + ctx.session.getInvoiceNumber(),
+             MARGIN, PAGE_H - 18, 9, true, WHITE);
+    }
+
     // -------------------------------------------------------------------------
     // Invoice Metadata
     // -------------------------------------------------------------------------
 
-    private void drawInvoiceMeta() throws IOException {
-        PDPageContentStream cs = cs();
+    private void drawInvoiceMeta(RenderContext ctx, PdfCanvas cs, float y) throws IOException {
+        BookingSession session = ctx.session;
         SimpleDateFormat sdf = new SimpleDateFormat("dd-MM-yyyy");
 
         // Blue rule under header
@@ -161,122 +569,81 @@ public class PDFGeneratorService {
 
         text(cs, "Invoice No:", leftX, y, 10, true, DARK);
         text(cs, session.getInvoiceNumber(), leftX + 75, y, 10, false, DARK);
-        y -= LINE_SM;
 
-        text(cs, "Date:", leftX, y, 10, true, DARK);
-        text(cs, sdf.format(session.getBookingDate()), leftX + 75, y, 10, false, DARK);
-        y -= LINE_SM;
+        text(cs, "Date:", leftX, y - LINE_SM, 10, true, DARK);
+        text(cs, sdf.format(session.getBookingDate()), leftX + 75, y - LINE_SM, 10, false, DARK);
 
         // Right: customer info
-        float metaTop = y + LINE_SM * 2;
-        text(cs, "Bill To:", rightX, metaTop, 10, true, DARK);
-        text(cs, session.getCustomerName(), rightX, metaTop - LINE_SM, 10, false, DARK);
+        text(cs, "Bill To:", rightX, y, 10, true, DARK);
+        text(cs, session.getCustomerName(), rightX, y - LINE_SM, 10, false, DARK);
         if (!session.getContactNumber().isEmpty())
-            text(cs, session.getContactNumber(), rightX, metaTop - LINE_SM * 2, 9, false, MUTED);
+            text(cs, session.getContactNumber(), rightX, y - LINE_SM * 2, 9, false, MUTED);
         if (!session.getAddress().isEmpty())
-            text(cs, truncate(session.getAddress(), 32), rightX, metaTop - LINE_SM * 3, 9, false, MUTED);
+            text(cs, truncate(session.getAddress(), 32), rightX, y - LINE_SM * 3, 9, false, MUTED);
 
-        advanceY(LINE_MD);
-        hline(cs(), y + 5, DARK, 0.5f);
-        advanceY(LINE_SM);
+        hline(cs, y - LINE_SM * 2 - LINE_MD + 5, DARK, 0.5f);
     }
 
     // -------------------------------------------------------------------------
-    // Flight Section
+    // Booking Rows
     // -------------------------------------------------------------------------
 
-    private void drawFlightSection() throws IOException {
-        drawSectionHeader("FLIGHT BOOKINGS");
-        drawTableHeader(new String[]{"PNR", "Route", "Pax", "Fare"},
-                        new float[]  {MARGIN, MARGIN+100, MARGIN+290, MARGIN+360});
-
-        for (BookingSession.FlightBookingData f : session.getFlights()) {
-            ensureSpace(LINE_SM);
-            PDPageContentStream cs = cs();
-            text(cs, truncate(f.pnr, 14),                       MARGIN,       y, 10, false, DARK);
-            text(cs, truncate(f.source + " \u2192 " + f.dest, 24), MARGIN+100, y, 10, false, DARK);
-            text(cs, String.valueOf(f.passengers),               MARGIN+290,   y, 10, false, DARK);
-            text(cs, BasePanel.CURRENCY + " " + f.fare.toPlainString(), MARGIN+360, y, 10, false, DARK);
-            advanceY(LINE_SM);
-        }
-
-        // Subtotal row
-        PDPageContentStream cs = cs();
-        hline(cs, y + 4, MUTED, 0.5f);
-        advanceY(LINE_SM);
-        text(cs(), "Flight Subtotal:", MARGIN + 250, y, 10, true, DARK);
-        text(cs(), BasePanel.CURRENCY + " " + session.getFlightTotal().toPlainString(), MARGIN + 360, y, 10, true, BLUE_PRIMARY);
-        advanceY(LINE_MD);
+    private void drawFlightRow(PdfCanvas cs, BookingSession.FlightBookingData f, float y) throws IOException {
+        text(cs, truncate(f.pnr, 14),                          MARGIN,     y, 10, false, DARK);
+        text(cs, truncate(f.source + " \u2192 " + f.dest, 24), MARGIN+100, y, 10, false, DARK);
+        text(cs, String.valueOf(f.passengers),                 MARGIN+290, y, 10, false, DARK);
+        text(cs, BasePanel.CURRENCY + " " + f.fare.toPlainString(), MARGIN+360, y, 10, false, DARK);
     }
 
-    // -------------------------------------------------------------------------
-    // Car Section
-    // -------------------------------------------------------------------------
-
-    private void drawCarSection() throws IOException {
-        drawSectionHeader("CAR RENTALS");
-        drawTableHeader(new String[]{"Vehicle No", "Route", "Fare"},
-                        new float[]  {MARGIN, MARGIN+130, MARGIN+360});
-
-        for (BookingSession.CarBookingData c : session.getCars()) {
-            ensureSpace(LINE_SM);
-            PDPageContentStream cs = cs();
-            text(cs, truncate(c.carNo, 18),                            MARGIN,     y, 10, false, DARK);
-            text(cs, truncate(c.source + " \u2192 " + c.dest, 26),    MARGIN+130, y, 10, false, DARK);
-            text(cs, BasePanel.CURRENCY + " " + c.fare.toPlainString(), MARGIN+360, y, 10, false, DARK);
-            advanceY(LINE_SM);
-        }
+    private void drawCarRow(PdfCanvas cs, BookingSession.CarBookingData c, float y) throws IOException {
+        text(cs, truncate(c.carNo, 18),                            MARGIN,     y, 10, false, DARK);
+        text(cs, truncate(c.source + " \u2192 " + c.dest, 26),    MARGIN+130, y, 10, false, DARK);
+        text(cs, BasePanel.CURRENCY + " " + c.fare.toPlainString(), MARGIN+360, y, 10, false, DARK);
+    }
 
-        PDPageContentStream cs = cs();
-        hline(cs, y + 4, MUTED, 0.5f);
-        advanceY(LINE_SM);
-        text(cs(), "Car Subtotal:", MARGIN + 280, y, 10, true, DARK);
-        text(cs(), BasePanel.CURRENCY + " " + session.getCarTotal().toPlainString(), MARGIN + 360, y, 10, true, BLUE_PRIMARY);
-        advanceY(LINE_MD);
+    private void drawSubtotal(PdfCanvas cs, String label, float labelX, String amount, float y) throws IOException {
+        text(cs, label, labelX, y, 10, true, DARK);
+        text(cs, BasePanel.CURRENCY + " " + amount, MARGIN + 360, y, 10, true, BLUE_PRIMARY);
     }
 
     // -------------------------------------------------------------------------
     // Totals
     // -------------------------------------------------------------------------
 
-    private void drawTotals() throws IOException {
-        ensureSpace(90);
-        PDPageContentStream cs = cs();
+    private void drawTotals(RenderContext ctx, PdfCanvas cs, float y) throws IOException {
+        BookingSession session = ctx.session;
 
-        advanceY(10);
+        y -= 10;
         hline(cs, y + 5, DARK, 1f);
-        advanceY(LINE_MD);
+        y -= LINE_MD;
 
         // Subtotal
         text(cs, "Subtotal:", MARGIN + 280, y, 11, true, DARK);
         text(cs, BasePanel.CURRENCY + " " + session.getSubtotal().toPlainString(), MARGIN + 360, y, 11, false, DARK);
-        advanceY(LINE_MD);
+        y -= LINE_MD;
 
         // GST
         text(cs, "GST (" + session.getGstRatePercent().toPlainString() + "%):", MARGIN + 280, y, 11, true, DARK);
         text(cs, BasePanel.CURRENCY + " " + session.getGstAmount().toPlainString(), MARGIN + 360, y, 11, false, DARK);
-        advanceY(LINE_MD);
+        y -= LINE_MD;
 
         // Grand total band
-        cs.setNonStrokingColor(GREEN_SUCCESS);
-        cs.addRect(MARGIN, y - 10, CONTENT_W, 32);
-        cs.fill();
+        cs.fillRect(MARGIN, y - 10, CONTENT_W, 32, GREEN_SUCCESS);
 
         text(cs, "GRAND TOTAL:", MARGIN + 230, y + 7, 14, true, WHITE);
         text(cs, BasePanel.CURRENCY + " " + session.getTotalAmount().toPlainString(), MARGIN + 360, y + 7, 16, true, WHITE);
-        advanceY(40);
     }
 
     // -------------------------------------------------------------------------
     // Footer
     // -------------------------------------------------------------------------
 
-    private void drawFooter(PDPageContentStream cs, int pageNo, int totalPages) throws IOException {
+    private void drawFooter(RenderContext ctx, PdfCanvas cs, int pageNo, int totalPages) throws IOException {
         hline(cs, FOOTER_H + 20, MUTED, 0.5f);
 
         text(cs, "Payment Terms: Please remit within 15 days of invoice date.",
              MARGIN, FOOTER_H + 10, 8, false, MUTED);
-        text(cs, "Thank you for choosing " + session.getCompanyName() + "!",
+        text(cs, "Thank you for choosing " + ctx.session.getCompanyName() + "!",
              MARGIN, FOOTER_H - 3, 9, true, DARK);
 
         // Page number (right-aligned)
@@ -291,65 +658,39 @@ public class PDFGeneratorService {
     // Section Helpers
     // -------------------------------------------------------------------------
 
-    private void drawSectionHeader(String title) throws IOException {
-        ensureSpace(40);
-        PDPageContentStream cs = cs();
-        cs.setNonStrokingColor(BLUE_PRIMARY);
-        cs.addRect(MARGIN, y - 6, CONTENT_W, 22);
-        cs.fill();
+    private void drawSectionHeader(PdfCanvas cs, String title, float y) throws IOException {
+        cs.fillRect(MARGIN, y - 6, CONTENT_W, 22, BLUE_PRIMARY);
         text(cs, title, MARGIN + 8, y + 2, 11, true, WHITE);
-        advanceY(LINE_MD + 6);
     }
 
-    private void drawTableHeader(String[] labels, float[] xs) throws IOException {
-        ensureSpace(LINE_SM + 6);
-        PDPageContentStream cs = cs();
-        cs.setNonStrokingColor(LIGHT_BG);
-        cs.addRect(MARGIN, y - 4, CONTENT_W, LINE_SM + 2);
-        cs.fill();
+    private void drawTableHeader(PdfCanvas cs, String[] labels, float[] xs, float y) throws IOException {
+        cs.fillRect(MARGIN, y - 4, CONTENT_W, LINE_SM + 2, LIGHT_BG);
         for (int i = 0; i < labels.length; i++) {
             text(cs, labels[i], xs[i] + 4, y, 9, true, DARK);
         }
-        advanceY(LINE_SM + 4);
-    }
-
-    private void ensureSpace(float needed) throws IOException {
-        if (y - needed < SAFE_BOT) newPage();
     }
 
     // -------------------------------------------------------------------------
     // Low-level Drawing Helpers
     // -------------------------------------------------------------------------
 
-    private void hline(PDPageContentStream cs, float atY, PDColor color, float width) throws IOException {
-        cs.setStrokingColor(color);
-        cs.setLineWidth(width);
-        cs.moveTo(MARGIN, atY);
-        cs.lineTo(PAGE_W - MARGIN, atY);
-        cs.stroke();
+    private void hline(PdfCanvas cs, float atY, PDColor color, float width) throws IOException {
+        cs.line(MARGIN, PAGE_W - MARGIN, atY, color, width);
     }
 
-    private void text(PDPageContentStream cs, String str, float x, float atY,
+    private void text(PdfCanvas cs, String str, float x, float atY,
                       int size, boolean bold, PDColor color) throws IOException {
         if (str == null || str.isEmpty()) return;
-        cs.setNonStrokingColor(color);
-        cs.beginText();
-        cs.setFont(
-            bold ? new PDType1Font(Standard14Fonts.FontName.HELVETICA_BOLD)
-                 : new PDType1Font(Standard14Fonts.FontName.HELVETICA),
-            size);
-        cs.newLineAtOffset(x, atY);
         // Replace characters not in PDFBox's WinAnsiEncoding
-        cs.showText(sanitise(str));
-        cs.endText();
+        cs.text(sanitise(str), x, atY, size, bold, color);
     }
 
     /** Replace non-Latin characters (e.g. → arrow, ₹) with safe ASCII equivalents. */
     private String sanitise(String s) {
-        return s.replace('\u2192', '>')   // → arrow
-                .replace("\u20B9", "Rs.") // ₹ rupee sign
-                .replace("\u2026", "...") // … ellipsis
-                .replaceAll("[^\\x20-\\x7E\\xA0-\\xFF]", "?");
+        s = s.replace('\u2192', '>')    // → arrow
+             .replace("\u20B9", "Rs.")  // ₹ rupee sign
+             .replace("\u2026", "..."); // … ellipsis
+        return NON_WIN_ANSI.matcher(s).replaceAll("?");
     }
 
     private String truncate(String s, int max) {
@@ -0,0 +1,327 @@
+package bill;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.channels.ClosedByInterruptException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Rendered invoice PDFs, keyed by the content they were rendered from.
+ *
+ * The key is a SHA-256 of {@link PDFGeneratorService#RENDER_VERSION} followed by
+ * the session in {@link SessionFormat}: customer, invoice details, every booking,
+ * GST rate and company details. The renderer has no other input, so equal keys
+ * mean byte-identical PDFs, and re-exporting an unchanged invoice — from the
+ * History screen or a batch re-run — is a lookup instead of a render.
+ *
+ * Two tiers, each evicting least-recently-used entries once over its byte budget:
+ * a small in-memory map, and a folder of {@code <key>.pdf} files whose
+ * last-modified time serves as the LRU clock. Disk problems are never fatal; the
+ * cache just behaves as a miss.
+ *
+ * Thread-safe. The lock guards only the in-memory map; disk reads, writes and
+ * eviction run outside it, so a slow disk never holds up memory hits. Each
+ * write goes to its own temp file and is renamed into place, so threads and
+ * processes sharing the folder never see a partly written PDF. The disk byte
+ * count is approximate between evictions; each eviction recounts the folder.
+ * Renders happen outside the lock too. Threads that ask for an invoice already
+ * being rendered wait for that render, so each miss renders once.
+ */
+public final class PdfCache {
+
+    /** Default folder for the shared cache. */
+    public static final File DEFAULT_DIR =
+        new File(System.getProperty("user.home"), ".ridhisidhi" + File.separator + "pdf-cache");
+
+    public static final long DEFAULT_MEMORY_BYTES = 32L  << 20;
+    public static final long DEFAULT_DISK_BYTES   = 256L << 20;
+
+    // Temp files older than this were left by a process that died mid-write
+    private static final long STALE_TMP_MILLIS = TimeUnit.HOURS.toMillis(1);
+
+    private static PdfCache shared;
+
+    private final File dir;            // null = memory only
+    private final long maxMemoryBytes;
+    private final long maxDiskBytes;
+
+    private final LinkedHashMap<String, byte[]> memory = new LinkedHashMap<>(64, 0.75f, true); // guarded by this
+    private long memoryBytes;                                                                   // guarded by this
+
+    private final AtomicLong    diskBytes = new AtomicLong(-1); // unknown until the folder is first scanned
+    private final AtomicBoolean evicting  = new AtomicBoolean();
+
+    // Renders under way, by key; removed once the result is in the cache
+    private final ConcurrentHashMap<String, CompletableFuture<byte[]>> rendering = new ConcurrentHashMap<>();
+
+    /** Produces the PDF for a key on a cache miss. */
+    @FunctionalInterface
+    public interface Renderer {
+        byte[] render() throws IOException;
+    }
+
+    /**
+     * @param dir            folder for the disk tier, created on first write; null for memory only
+     * @param maxMemoryBytes budget for the in-memory tier
+     * @param maxDiskBytes   budget for the disk tier
+     */
+    public PdfCache(File dir, long maxMemoryBytes, long maxDiskBytes) {
+        this.dir            = dir;
+        this.maxMemoryBytes = maxMemoryBytes;
+        this.maxDiskBytes   = maxDiskBytes;
+    }
+
+    /** The application-wide cache in {@link #DEFAULT_DIR}, with the default budgets. */
+    public static synchronized PdfCache shared() {
+        if (shared == null) shared = new PdfCache(DEFAULT_DIR, DEFAULT_MEMORY_BYTES, DEFAULT_DISK_BYTES);
+        return shared;
+    }
+
+    /** Content key for the session: hex SHA-256 of the renderer version and the session data. */
+    public static String keyOf(BookingSession session) {
+        MessageDigest sha;
+        try {
+            sha = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+        try (DigestOutputStream out = new DigestOutputStream(OutputStream.nullOutputStream(), sha)) {
+            int v = PDFGeneratorService.RENDER_VERSION;
+            out.write(new byte[]{ (byte) (v >>> 24), (byte) (v >>> 16), (byte) (v >>> 8), (byte) v });
+            SessionFormat.write(session, out);
+        } catch (IOException e) {
+            throw new IllegalStateException(e); // cannot happen: the stream discards everything
+        }
+        StringBuilder hex = new StringBuilder(64);
+        for (byte b : sha.digest()) hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        return hex.toString();
+    }
+
+    /**
+     * The PDF for the session, from the cache if present, otherwise rendered with
+     * generator and added. progress (may be null) only sees pages on a miss.
+     */
+    public byte[] getOrRender(BookingSession session, PDFGeneratorService generator,
+                              PDFGeneratorService.ProgressListener progress) throws IOException {
+        return getOrRender(keyOf(session), () -> {
+            ByteArrayOutputStream out = new ByteArrayOutputStream(64 * 1024);
+            generator.generatePDF(session, out, progress);
+            return out.toByteArray();
+        });
+    }
+
+    /**
+     * Cached bytes for key, otherwise renderer's result, which is then added. If
+     * another thread is already rendering key, waits for its result (or its
+     * exception) instead of rendering again. If that render was cancelled, as
+     * BillView cancels a stale pre-render, a caller that was not cancelled itself
+     * starts over rather than failing with the other thread's interruption.
+     */
+    public byte[] getOrRender(String key, Renderer renderer) throws IOException {
+        while (true) {
+            byte[] pdf = get(key);
+            if (pdf != null) return pdf;
+
+            CompletableFuture<byte[]> mine    = new CompletableFuture<>();
+            CompletableFuture<byte[]> running = rendering.putIfAbsent(key, mine);
+            if (running == null) return render(key, renderer, mine);
+            pdf = await(running);
+            if (pdf != null) return pdf;
+        }
+    }
+
+    /**
+     * Renders key as the registered owner of mine. The entry is removed before mine
+     * completes, so a waiter that starts over never finds the finished render.
+     */
+    private byte[] render(String key, Renderer renderer, CompletableFuture<byte[]> mine) throws IOException {
+        byte[] pdf;
+        try {
+            pdf = get(key); // the previous render of key may have finished since the first look
+            if (pdf == null) {
+                pdf = renderer.render();
+                put(key, pdf);
+            }
+        } catch (IOException | RuntimeException | Error e) {
+            rendering.remove(key, mine);
+            mine.completeExceptionally(e);
+            throw e;
+        }
+        rendering.remove(key, mine);
+        mine.complete(pdf);
+        return pdf;
+    }
+
+    /**
+     * The other thread's result. Null if that thread was interrupted and this one
+     * was not, so the caller should try again; any other exception is rethrown as is.
+     */
+    private static byte[] await(CompletableFuture<byte[]> render) throws IOException {
+        try {
+            return render.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted waiting for the PDF");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            boolean   interrupted = cause instanceof InterruptedIOException || cause instanceof ClosedByInterruptException;
+            if (interrupted && !Thread.currentThread().isInterrupted()) return null;
+            if (cause instanceof IOException)      throw (IOException) cause;
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            if (cause instanceof Error)            throw (Error) cause;
+            throw new IOException(cause);
+        }
+    }
+
+    /** Cached bytes for key, or null. The array is shared; callers must not modify it. */
+    public byte[] get(String key) {
+        byte[] pdf;
+        synchronized (this) {
+            pdf = memory.get(key);
+        }
+        if (pdf != null || dir == null) return pdf;
+
+        File f = new File(dir, key + ".pdf");
+        try {
+            pdf = Files.readAllBytes(f.toPath());
+        } catch (IOException e) {
+            return null; // missing, or evicted by another thread or process meanwhile
+        }
+        f.setLastModified(System.currentTimeMillis());
+        synchronized (this) {
+            remember(key, pdf);
+        }
+        return pdf;
+    }
+
+    public void put(String key, byte[] pdf) {
+        synchronized (this) {
+            remember(key, pdf);
+        }
+        if (dir != null) store(key, pdf);
+    }
+
+    /** Drops every entry from both tiers. */
+    public void clear() {
+        synchronized (this) {
+            memory.clear();
+            memoryBytes = 0;
+        }
+        File[] files = listPdfs();
+        if (files != null) for (File f : files) f.delete();
+        diskBytes.set(0);
+    }
+
+    // -------------------------------------------------------------------------
+    // Memory tier
+    // -------------------------------------------------------------------------
+
+    /** Called with the lock held. */
+    private void remember(String key, byte[] pdf) {
+        if (pdf.length > maxMemoryBytes) return;
+        byte[] old = memory.put(key, pdf);
+        memoryBytes += pdf.length - (old == null ? 0 : old.length);
+        Iterator<byte[]> eldest = memory.values().iterator();
+        while (memoryBytes > maxMemoryBytes && eldest.hasNext()) {
+            memoryBytes -= eldest.next().length;
+            eldest.remove();
+        }
+    }
+
+    // -------------------------------------------------------------------------
+    // Disk tier
+    // -------------------------------------------------------------------------
+
+    private void store(String key, byte[] pdf) {
+        if (pdf.length > maxDiskBytes) return;
+        File target = new File(dir, key + ".pdf");
+        Path tmp    = null;
+        try {
+            if (diskBytes.get() < 0) diskBytes.compareAndSet(-1, scanDisk());
+            long replaced = target.isFile() ? target.length() : 0;
+            Files.createDirectories(dir.toPath());
+            // Unique per write: another thread or process may be storing the same key
+            tmp = Files.createTempFile(dir.toPath(), key + ".", ".tmp");
+            Files.write(tmp, pdf);
+            try {
+                Files.move(tmp, target.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmp, target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+            if (diskBytes.addAndGet(pdf.length - replaced) > maxDiskBytes) evictDisk();
+        } catch (IOException e) {
+            // a cache that cannot write is just a smaller cache
+            if (tmp != null) tmp.toFile().delete();
+        }
+    }
+
+    /** Total size of the cached PDFs. Also deletes temp files abandoned by crashed writers. */
+    private long scanDisk() {
+        File[] stale = dir.listFiles((d, name) -> name.endsWith(".tmp"));
+        long   now   = System.currentTimeMillis();
+        if (stale != null) for (File f : stale) if (now - f.lastModified() > STALE_TMP_MILLIS) f.delete();
+
+        File[] files = listPdfs();
+        long total = 0;
+        if (files != null) for (File f : files) total += f.length();
+        return total;
+    }
+
+    /**
+     * Deletes the least recently used files until the folder is within budget.
+     * One thread evicts at a time; the others carry on, since the running
+     * eviction recounts the folder and will see their files.
+     */
+    private void evictDisk() {
+        if (!evicting.compareAndSet(false, true)) return;
+        try {
+            evictLeastRecentlyUsed();
+        } finally {
+            evicting.set(false);
+        }
+    }
+
+    private void evictLeastRecentlyUsed() {
+        File[] files = listPdfs();
+        if (files == null) return;
+        List<File> byAge = new ArrayList<>(Arrays.asList(files));
+        Map<File, Long> stamp = new LinkedHashMap<>();
+        for (File f : byAge) stamp.put(f, f.lastModified());
+        byAge.sort(Comparator.comparing(stamp::get));
+
+        long total = 0;
+        for (File f : byAge) total += f.length();
+        for (File f : byAge) {
+            if (total <= maxDiskBytes) break;
+            long len = f.length();
+            if (f.delete()) total -= len;
+        }
+        diskBytes.set(total);
+    }
+
+    private File[] listPdfs() {
+        return dir == null ? null : dir.listFiles((d, name) -> name.endsWith(".pdf"));
+    }
+}
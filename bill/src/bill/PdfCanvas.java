@@ -0,0 +1,101 @@
+package bill;
+
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.font.PDFont;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+import org.apache.pdfbox.pdmodel.font.Standard14Fonts;
+import org.apache.pdfbox.pdmodel.graphics.color.PDColor;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Drawing surface for one PDF page used by PDFGeneratorService.
+ *
+ * Wraps the page's PDPageContentStream and remembers the current fill colour,
+ * stroke colour, line width and font/size. An operator is only written when the
+ * value actually changes, so runs of same-styled table rows produce no
+ * redundant rg / RG / w / Tf operators. Colours are compared by identity: callers
+ * pass the shared constants, never freshly built PDColor objects.
+ *
+ * The tracked state is valid because the generator never uses q/Q, and PDF keeps
+ * colours, line width and the text font in the graphics state across BT/ET blocks.
+ */
+final class PdfCanvas implements Closeable {
+
+    /**
+     * The two Standard 14 fonts used on invoices, built once per document.
+     *
+     * PDFBox already caches the font metrics for the whole JVM, so construction is
+     * cheap; the PDType1Font objects themselves keep mutable encoding caches and are
+     * therefore not shared between documents or threads. Reusing one instance per
+     * document also lets every page register a single /F resource per font instead
+     * of one per text draw.
+     */
+    static final class Fonts {
+        final PDFont regular = new PDType1Font(Standard14Fonts.FontName.HELVETICA);
+        final PDFont bold    = new PDType1Font(Standard14Fonts.FontName.HELVETICA_BOLD);
+    }
+
+    private final PDPageContentStream cs;
+    private final Fonts               fonts;
+
+    // Current graphics / text state (null or -1 = not yet set on this page)
+    private PDColor fill;
+    private PDColor stroke;
+    private float   lineWidth = -1f;
+    private PDFont  font;
+    private float   fontSize  = -1f;
+
+    PdfCanvas(PDPageContentStream cs, Fonts fonts) {
+        this.cs    = cs;
+        this.fonts = fonts;
+    }
+
+    void fillRect(float x, float y, float w, float h, PDColor color) throws IOException {
+        setFill(color);
+        cs.addRect(x, y, w, h);
+        cs.fill();
+    }
+
+    void line(float x1, float x2, float atY, PDColor color, float width) throws IOException {
+        if (stroke != color) {
+            cs.setStrokingColor(color);
+            stroke = color;
+        }
+        if (lineWidth != width) {
+            cs.setLineWidth(width);
+            lineWidth = width;
+        }
+        cs.moveTo(x1, atY);
+        cs.lineTo(x2, atY);
+        cs.stroke();
+    }
+
+    /** Shows already-sanitised text; the caller is responsible for WinAnsi safety. */
+    void text(String str, float x, float atY, float size, boolean bold, PDColor color) throws IOException {
+        setFill(color);
+        cs.beginText();
+        PDFont f = bold ? fonts.bold : fonts.regular;
+        if (font != f || fontSize != size) {
+            cs.setFont(f, size);
+            font     = f;
+            fontSize = size;
+        }
+        cs.newLineAtOffset(x, atY);
+        cs.showText(str);
+        cs.endText();
+    }
+
+    private void setFill(PDColor color) throws IOException {
+        if (fill != color) {
+            cs.setNonStrokingColor(color);
+            fill = color;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        cs.close();
+    }
+}
@@ -0,0 +1,68 @@
+package bill;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Speculative PDF render for BillView. Started when the invoice preview is shown,
+ * since "Save as PDF" is nearly always the next click; the export then only has
+ * to write the bytes.
+ *
+ * Goes through PdfCache, so an invoice exported before is ready at once.
+ * Renders a copy of the session taken at start, and is tagged with the session
+ * version it was taken at. It is only valid while the session is still at that
+ * version — BillView discards it on the next change event.
+ */
+final class PdfPrerender {
+
+    // One low-priority thread: a speculative render should never compete with the UI
+    private static final ExecutorService EXECUTOR = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "pdf-prerender");
+        t.setDaemon(true);
+        t.setPriority(Thread.MIN_PRIORITY);
+        return t;
+    });
+
+    final long version;
+
+    private final Future<byte[]> result;
+    private volatile PDFGeneratorService.ProgressListener listener;
+
+    private PdfPrerender(BookingSession snapshot, long version) {
+        this.version = version;
+        this.result  = EXECUTOR.submit(() ->
+            PdfCache.shared().getOrRender(snapshot, new PDFGeneratorService(), (done, total) -> {
+                PDFGeneratorService.ProgressListener l = listener;
+                if (l != null) l.pageRendered(done, total);
+            }));
+    }
+
+    /** Starts rendering the session as it is now. Call on the EDT. */
+    static PdfPrerender start(BookingSession session) {
+        return new PdfPrerender(session.readOnlyCopy(), session.getVersion());
+    }
+
+    /**
+     * Waits for the bytes, forwarding the remaining page progress to progress.
+     * Returns null if the render failed or was cancelled, in which case the caller
+     * should render itself. InterruptedException means the caller was cancelled;
+     * the pre-render carries on.
+     */
+    byte[] await(PDFGeneratorService.ProgressListener progress) throws InterruptedException {
+        listener = progress;
+        try {
+            return result.get();
+        } catch (ExecutionException | CancellationException e) {
+            return null;
+        } finally {
+            listener = null;
+        }
+    }
+
+    void cancel() {
+        result.cancel(true);
+    }
+}
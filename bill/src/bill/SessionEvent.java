@@ -0,0 +1,62 @@
+package bill;
+
+import java.util.EventObject;
+
+/**
+ * Describes one change to a BookingSession. Fired synchronously, on the thread that
+ * made the change, to every registered {@link SessionListener}.
+ *
+ * For flight and car events, index is the position in the flight or car list
+ * (after the change for ADDED / UPDATED, before it for REMOVED); it is -1 for the
+ * other types. count is the number of consecutive lines from index that changed:
+ * 1 except for batch appends, which report every new line in one ADDED event.
+ * version is the session's version after this change.
+ */
+public class SessionEvent extends EventObject {
+
+    private static final long serialVersionUID = 1L;
+
+    public enum Type {
+        FLIGHT_ADDED, FLIGHT_UPDATED, FLIGHT_REMOVED,
+        CAR_ADDED,    CAR_UPDATED,    CAR_REMOVED,
+        CUSTOMER_CHANGED, COMPANY_CHANGED, GST_RATE_CHANGED,
+        /** Everything except company details and GST rate was cleared. */
+        RESET
+    }
+
+    public final Type type;
+    public final int  index;
+    public final int  count;
+    public final long version;
+
+    SessionEvent(BookingSession session, Type type, int index, int count, long version) {
+        super(session);
+        this.type    = type;
+        this.index   = index;
+        this.count   = count;
+        this.version = version;
+    }
+
+    /** Last list position covered by this event (index + count - 1). */
+    public int lastIndex() {
+        return index + count - 1;
+    }
+
+    public BookingSession getSession() {
+        return (BookingSession) getSource();
+    }
+
+    public boolean isFlightChange() {
+        return type == Type.FLIGHT_ADDED || type == Type.FLIGHT_UPDATED || type == Type.FLIGHT_REMOVED;
+    }
+
+    public boolean isCarChange() {
+        return type == Type.CAR_ADDED || type == Type.CAR_UPDATED || type == Type.CAR_REMOVED;
+    }
+
+    @Override
+    public String toString() {
+        String range = index < 0 ? "" : count == 1 ? "[" + index + "]" : "[" + index + ".." + lastIndex() + "]";
+        return type + range + " v" + version;
+    }
+}
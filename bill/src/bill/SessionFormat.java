@@ -0,0 +1,251 @@
+package bill;
+
+import java.io.*;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+
+/**
+ * Compact binary layout for saved sessions (.rss), replacing Java serialization.
+ *
+ * <pre>
+ *   int    MAGIC ("RSSB")
+ *   short  VERSION
+ *   block  header   — invoice no., customer, date, GST rate, subtotal, GST, total,
+ *                     flight / car / passenger counts
+ *   block  details  — company name, tagline, email, phone, contact, address
+ *   block  flight × flightCount
+ *   block  car    × carCount
+ * </pre>
+ *
+ * Every block is an int byte length followed by its payload, so a reader can skip
+ * anything it does not need and later versions can append fields to a block
+ * without breaking older readers. The header comes first and is fixed in shape,
+ * which lets {@link #readSummary} stop after the first few hundred bytes.
+ *
+ * Strings are an int UTF-8 byte length (-1 for null) plus the bytes. Amounts are
+ * scaled integers: a scale byte followed by the unscaled value as a long, so
+ * fares, totals and the GST rate all round-trip with their exact value and
+ * scale. A null date is Long.MIN_VALUE.
+ *
+ * Files that do not start with MAGIC are treated as legacy ObjectOutputStream
+ * sessions; {@link BookingSession#loadFrom} still reads them.
+ */
+final class SessionFormat {
+
+    static final int   MAGIC   = 0x52535342; // "RSSB"
+    static final short VERSION = 1;
+
+    private static final long NO_DATE   = Long.MIN_VALUE;
+    private static final int  MAX_BLOCK = 1 << 24; // guards against allocating from a corrupt length
+
+    private SessionFormat() {}
+
+    /** True if the stream starts with this format's magic number. Leaves the stream where it was. */
+    static boolean isBinary(BufferedInputStream in) throws IOException {
+        in.mark(4);
+        int b0 = in.read(), b1 = in.read(), b2 = in.read(), b3 = in.read();
+        in.reset();
+        return b3 >= 0 && ((b0 << 24) | (b1 << 16) | (b2 << 8) | b3) == MAGIC;
+    }
+
+    // -------------------------------------------------------------------------
+    // Writing
+    // -------------------------------------------------------------------------
+
+    static void write(BookingSession s, OutputStream os) throws IOException {
+        DataOutputStream out   = new DataOutputStream(os);
+        BlockWriter      block = new BlockWriter();
+
+        out.writeInt(MAGIC);
+        out.writeShort(VERSION);
+
+        DataOutputStream h = block.begin();
+        writeString(h, s.getInvoiceNumber());
+        writeString(h, s.getCustomerName());
+        h.writeLong(s.getBookingDate() == null ? NO_DATE : s.getBookingDate().getTime());
+        writeAmount(h, s.getGstRatePercent());
+        writeMoney(h, s.getSubtotal());
+        writeMoney(h, s.getGstAmount());
+        writeMoney(h, s.getTotalAmount());
+        h.writeInt(s.getTotalFlights());
+        h.writeInt(s.getTotalCars());
+        h.writeInt(s.getTotalPassengers());
+        block.end(out);
+
+        DataOutputStream d = block.begin();
+        writeString(d, s.getCompanyName());
+        writeString(d, s.getCompanyTagline());
+        writeString(d, s.getCompanyEmail());
+        writeString(d, s.getCompanyPhone());
+        writeString(d, s.getContactNumber());
+        writeString(d, s.getAddress());
+        block.end(out);
+
+        for (BookingSession.FlightBookingData f : s.getFlights()) {
+            DataOutputStream r = block.begin();
+            writeString(r, f.pnr);
+            writeString(r, f.source);
+            writeString(r, f.dest);
+            writeMoney(r, f.fare);
+            r.writeInt(f.passengers);
+            block.end(out);
+        }
+        for (BookingSession.CarBookingData c : s.getCars()) {
+            DataOutputStream r = block.begin();
+            writeString(r, c.carNo);
+            writeString(r, c.source);
+            writeString(r, c.dest);
+            writeMoney(r, c.fare);
+            block.end(out);
+        }
+        out.flush();
+    }
+
+    /** Reusable scratch buffer for building one length-prefixed block at a time. */
+    private static final class BlockWriter {
+        private final ByteArrayOutputStream buf = new ByteArrayOutputStream(256);
+        private final DataOutputStream      out = new DataOutputStream(buf);
+
+        DataOutputStream begin() {
+            buf.reset();
+            return out;
+        }
+
+        void end(DataOutputStream target) throws IOException {
+            target.writeInt(buf.size());
+            buf.writeTo(target);
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        if (s == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static void writeMoney(DataOutputStream out, Money m) throws IOException {
+        out.writeByte(m.scale());
+        out.writeLong(m.unscaledValue());
+    }
+
+    private static void writeAmount(DataOutputStream out, BigDecimal v) throws IOException {
+        if (v.scale() < 0) v = v.setScale(0);
+        if (v.scale() > Byte.MAX_VALUE || v.unscaledValue().bitLength() > 63)
+            throw new IOException("Amount out of range for session file: " + v.toPlainString());
+        out.writeByte(v.scale());
+        out.writeLong(v.unscaledValue().longValue());
+    }
+
+    // -------------------------------------------------------------------------
+    // Reading
+    // -------------------------------------------------------------------------
+
+    /** Reads only the header block. The stream must be positioned at the magic number. */
+    static BookingSession.Summary readSummary(InputStream is) throws IOException {
+        DataInputStream in = new DataInputStream(is);
+        readPreamble(in);
+        return readHeader(block(in));
+    }
+
+    static BookingSession read(InputStream is) throws IOException {
+        DataInputStream in = new DataInputStream(is);
+        readPreamble(in);
+        BookingSession.Summary header = readHeader(block(in));
+
+        BookingSession   s = new BookingSession();
+        DataInputStream  d = block(in);
+        s.setCompanyDetails(readString(d), readString(d), readString(d), readString(d));
+        String contact = readString(d);
+        String address = readString(d);
+        s.setCustomerDetails(nz(header.customerName), nz(contact), nz(address),
+                             nz(header.invoiceNumber), header.bookingDate);
+        s.setGstRate(header.gstRatePercent);
+
+        try {
+            for (int i = 0; i < header.flightCount; i++) {
+                DataInputStream r = block(in);
+                s.restoreFlight(new BookingSession.FlightBookingData(
+                    readText(r), readText(r), readText(r), readMoney(r), r.readInt()));
+            }
+            for (int i = 0; i < header.carCount; i++) {
+                DataInputStream r = block(in);
+                s.restoreCar(new BookingSession.CarBookingData(
+                    readText(r), readText(r), readText(r), readMoney(r)));
+            }
+        } catch (IllegalArgumentException e) {
+            throw new InvalidObjectException(e.getMessage()); // totals out of range
+        }
+        return s;
+    }
+
+    private static void readPreamble(DataInputStream in) throws IOException {
+        if (in.readInt() != MAGIC) throw new InvalidObjectException("Not a binary session file");
+        short version = in.readShort();
+        if (version < 1 || version > VERSION)
+            throw new InvalidObjectException("Unsupported session file version " + version);
+    }
+
+    private static BookingSession.Summary readHeader(DataInputStream h) throws IOException {
+        String     invoice  = readString(h);
+        String     customer = readString(h);
+        long       date     = h.readLong();
+        BigDecimal gstRate  = readAmount(h);
+        Money      subtotal = readMoney(h);
+        Money      gst      = readMoney(h);
+        Money      total    = readMoney(h);
+        int        flights  = h.readInt();
+        int        cars     = h.readInt();
+        int        pax      = h.readInt();
+        if (flights < 0 || cars < 0) throw new InvalidObjectException("Corrupt session header");
+        return new BookingSession.Summary(invoice, customer, date == NO_DATE ? null : new Date(date),
+                                          gstRate, subtotal, gst, total, flights, cars, pax);
+    }
+
+    /** Reads one length-prefixed block fully and returns a reader over just that block. */
+    private static DataInputStream block(DataInputStream in) throws IOException {
+        int len = in.readInt();
+        if (len < 0 || len > MAX_BLOCK) throw new InvalidObjectException("Corrupt session block length " + len);
+        byte[] bytes = new byte[len];
+        in.readFully(bytes);
+        return new DataInputStream(new ByteArrayInputStream(bytes));
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int len = in.readInt();
+        if (len < 0) return null;
+        if (len > in.available()) throw new InvalidObjectException("Corrupt session string length " + len);
+        byte[] bytes = new byte[len];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /** A booking line field: never null, since nothing writes a null one. */
+    private static String readText(DataInputStream in) throws IOException {
+        String s = readString(in);
+        if (s == null) throw new InvalidObjectException("Corrupt session: booking line has a missing field");
+        return s;
+    }
+
+    private static String nz(String s) { return s == null ? "" : s; }
+
+    /** Amounts keep their exact value and scale, including any below a paisa. */
+    private static Money readMoney(DataInputStream in) throws IOException {
+        int  scale    = in.readByte();
+        long unscaled = in.readLong();
+        try {
+            return Money.of(unscaled, scale);
+        } catch (ArithmeticException e) {
+            throw new IOException("Amount out of range in session file: " + BigDecimal.valueOf(unscaled, scale).toPlainString());
+        }
+    }
+
+    private static BigDecimal readAmount(DataInputStream in) throws IOException {
+        int scale = in.readByte();
+        return BigDecimal.valueOf(in.readLong(), scale);
+    }
+}
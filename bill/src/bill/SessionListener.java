@@ -0,0 +1,8 @@
+package bill;
+
+import java.util.EventListener;
+
+/** Receives change notifications from a BookingSession. */
+public interface SessionListener extends EventListener {
+    void sessionChanged(SessionEvent e);
+}
@@ -0,0 +1,97 @@
+package bill;
+
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+/**
+ * A BookingSession that many threads can use at once: several agents editing,
+ * a server front end, or bulk jobs reading while edits go on.
+ *
+ * Reads never lock. {@link #snapshot()} returns the latest published version of
+ * the session, a read-only BookingSession that no one will change afterwards, so
+ * rendering, saving and totals all see one consistent state however long they
+ * take:
+ *
+ * <pre>
+ *   BookingSession s = shared.snapshot();
+ *   new PDFGeneratorService().generatePDF(s, file);
+ *   s.saveTo(sessionFile);
+ *   Money total = s.getTotalAmount();
+ * </pre>
+ *
+ * Writes are serialised. {@link #edit} runs its action on a private working
+ * session under a lock, then publishes a read-only copy of the result through
+ * an atomic reference. Several changes made in one edit publish once. An edit
+ * that throws is rolled back in full and publishes nothing.
+ *
+ * Cost per edit, for a session of n lines: records are immutable and the line
+ * lists are shared copy-on-write between versions in blocks of 64 (see
+ * BookingSession.copy()), so publishing copies about n / 64 references, not
+ * the lines. The edit itself then pays for the blocks it writes: adding or
+ * replacing a line copies one block of 64 references, while removing or moving
+ * one shifts the lines after it, O(n) as in a plain list. A rollback takes a
+ * new working copy from the published snapshot at the same n / 64 cost; its
+ * line ID index is rebuilt, O(n), on the next lookup by ID.
+ *
+ * The working session has no listeners; threads that want to follow changes
+ * compare {@link #getVersion()} with the version they last saw.
+ */
+public final class SharedSession {
+
+    private final AtomicReference<BookingSession> published;
+    private BookingSession working; // guarded by this
+
+    /** A new, empty shared session. */
+    public SharedSession() {
+        this(new BookingSession());
+    }
+
+    /** A shared session starting from a copy of initial; initial itself is not used afterwards. */
+    public SharedSession(BookingSession initial) {
+        working   = initial.copy();
+        published = new AtomicReference<>(working.readOnlyCopy());
+    }
+
+    /** The latest published state. Read-only, never changes, never blocks. */
+    public BookingSession snapshot() {
+        return published.get();
+    }
+
+    /** Version of the latest published state. */
+    public long getVersion() {
+        return published.get().getVersion();
+    }
+
+    /**
+     * Applies action to the session and publishes the result. Edits from other
+     * threads wait their turn. Returns the snapshot the edit produced, which is
+     * the previous one unchanged if the action changed nothing.
+     *
+     * If action throws, none of its changes are kept and the exception propagates.
+     */
+    public synchronized BookingSession edit(Consumer<? super BookingSession> action) {
+        long before = working.getVersion();
+        try {
+            action.accept(working);
+        } catch (RuntimeException | Error e) {
+            // Always: a mutator may have changed the lists before it threw, without
+            // yet bumping the version
+            working = published.get().copy();
+            throw e;
+        }
+        if (working.getVersion() == before) return published.get();
+        BookingSession next = working.readOnlyCopy();
+        published.set(next);
+        return next;
+    }
+
+    /**
+     * Like edit, but only if no other edit has been published since expectedVersion,
+     * typically the version of the snapshot the caller based its change on. Returns
+     * the new snapshot, or null (changing nothing) if the session has moved on.
+     */
+    public synchronized BookingSession editIfUnchanged(long expectedVersion, Consumer<? super BookingSession> action) {
+        if (working.getVersion() != expectedVersion) return null;
+        return edit(action);
+    }
+}
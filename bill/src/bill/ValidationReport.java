@@ -0,0 +1,68 @@
+package bill;
+
+import java.util.Arrays;
+
+/**
+ * Result of checking a batch of booking lines: which rows broke which rule.
+ *
+ * Stored as two parallel primitive arrays (row index, rule ordinal) in ascending
+ * row order, so a report for a large batch with few errors costs almost nothing
+ * and a clean batch allocates only the empty report.
+ */
+public final class ValidationReport {
+
+    private final int checked;
+    private int[]  rows  = new int[0];
+    private byte[] rules = new byte[0];
+    private int    size;
+
+    ValidationReport(int checked) {
+        this.checked = checked;
+    }
+
+    void add(int row, BookingRule rule) {
+        if (size == rows.length) {
+            int cap = Math.max(8, size * 2);
+            rows  = Arrays.copyOf(rows, cap);
+            rules = Arrays.copyOf(rules, cap);
+        }
+        rows[size]  = row;
+        rules[size] = (byte) rule.ordinal();
+        size++;
+    }
+
+    /** Number of lines checked. */
+    public int checked()    { return checked; }
+
+    /** Number of lines that passed every rule. */
+    public int validCount() { return checked - size; }
+
+    /** Number of invalid lines, i.e. entries in this report. */
+    public int size()       { return size; }
+
+    public boolean isEmpty() { return size == 0; }
+
+    /** 0-based position in the batch of the i-th invalid line. */
+    public int row(int i) {
+        if (i >= size) throw new IndexOutOfBoundsException("Index " + i + " out of bounds for length " + size);
+        return rows[i];
+    }
+
+    /** The rule the i-th invalid line broke (the first one checked). */
+    public BookingRule rule(int i) {
+        if (i >= size) throw new IndexOutOfBoundsException("Index " + i + " out of bounds for length " + size);
+        return BookingRule.of(rules[i]);
+    }
+
+    /** True if the line at batch position row passed validation. */
+    public boolean isValid(int row) {
+        return Arrays.binarySearch(rows, 0, size, row) < 0;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder().append(validCount()).append(" of ").append(checked).append(" valid");
+        for (int i = 0; i < size; i++) sb.append(i == 0 ? ": " : ", ").append("row ").append(rows[i]).append(' ').append(rule(i));
+        return sb.toString();
+    }
+}
@@ -0,0 +1,175 @@
+package bill;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Property check: Money gives bit-for-bit the results the BigDecimal code did.
+ *
+ * Usage:
+ *   java -cp classes:test-classes bill.MoneyCheck [iterations] [seed]
+ *
+ * Random amounts (scales 0-6, including sub-paisa and negative values) and GST
+ * rates (scales -1 to 3) are run through every Money operation and compared with
+ * BigDecimal, value and scale: plus, minus, percent against
+ * {@code multiply(rate).divide(100, 2, HALF_UP)}, toPlainString and compareTo.
+ * Then random edit sequences are applied both to a BookingSession and to a plain
+ * list of BigDecimal fares, and every total is compared with the original
+ * formulas: fresh reduce(ZERO, add) sums and GST on the subtotal.
+ *
+ * Prints the first mismatch and exits with 1, or prints a summary and exits 0.
+ */
+public final class MoneyCheck {
+
+    private static final BigDecimal HUNDRED = new BigDecimal("100");
+
+    private final Random rnd;
+    private long checks;
+
+    private MoneyCheck(long seed) {
+        this.rnd = new Random(seed);
+    }
+
+    public static void main(String[] args) {
+        int  iterations = args.length > 0 ? Integer.parseInt(args[0]) : 200_000;
+        long seed       = args.length > 1 ? Long.parseLong(args[1])   : 20_141_014L;
+        MoneyCheck check = new MoneyCheck(seed);
+        try {
+            check.arithmetic(iterations);
+            check.sessions(iterations / 1000 + 1);
+        } catch (AssertionError e) {
+            System.err.println("FAILED (seed " + seed + "): " + e.getMessage());
+            System.exit(1);
+        }
+        System.out.println("MoneyCheck passed: " + check.checks + " comparisons, seed " + seed);
+    }
+
+    // -------------------------------------------------------------------------
+    // Single operations
+    // -------------------------------------------------------------------------
+
+    private void arithmetic(int iterations) {
+        for (int i = 0; i < iterations; i++) {
+            BigDecimal a = amount(), b = amount(), rate = rate();
+            Money      ma = Money.of(a), mb = Money.of(b);
+
+            same("toPlainString " + a, a.toPlainString(), ma.toPlainString());
+            same("round trip " + a, a, ma.toBigDecimal());
+            same(a + " + " + b, a.add(b), ma.plus(mb).toBigDecimal());
+            same(a + " - " + b, a.subtract(b), ma.minus(mb).toBigDecimal());
+            same(a + " @ " + rate + "%", gst(a, rate), ma.percent(rate).toBigDecimal());
+            same("compare " + a + " " + b, Integer.signum(a.compareTo(b)), Integer.signum(ma.compareTo(mb)));
+            same("equals " + a + " " + b, a.equals(b), ma.equals(mb));
+        }
+    }
+
+    // -------------------------------------------------------------------------
+    // Edit sequences
+    // -------------------------------------------------------------------------
+
+    private void sessions(int count) {
+        for (int n = 0; n < count; n++) {
+            BookingSession   s       = new BookingSession();
+            List<BigDecimal> flights = new ArrayList<>();
+            List<Integer>    pax     = new ArrayList<>();
+            List<BigDecimal> cars    = new ArrayList<>();
+            BigDecimal       rate    = s.getGstRatePercent();
+
+            for (int step = 0; step < 300; step++) {
+                int op = rnd.nextInt(10);
+                if (op < 3) {
+                    BigDecimal fare = fare();
+                    int        p    = 1 + rnd.nextInt(4);
+                    s.addFlight("P" + step, "DEL", "BOM", fare, p);
+                    flights.add(fare);
+                    pax.add(p);
+                } else if (op < 5) {
+                    BigDecimal fare = fare();
+                    s.addCar("C" + step, "PNQ", "GOI", fare);
+                    cars.add(fare);
+                } else if (op == 5 && !flights.isEmpty()) {
+                    int        i    = rnd.nextInt(flights.size());
+                    BigDecimal fare = fare();
+                    s.updateFlight(i, "U" + step, "DEL", "MAA", fare, 2);
+                    flights.set(i, fare);
+                    pax.set(i, 2);
+                } else if (op == 6 && !cars.isEmpty()) {
+                    int        i    = rnd.nextInt(cars.size());
+                    BigDecimal fare = fare();
+                    s.updateCar(i, "U" + step, "PNQ", "BOM", fare);
+                    cars.set(i, fare);
+                } else if (op == 7 && !flights.isEmpty()) {
+                    int i = rnd.nextInt(flights.size());
+                    s.removeFlight(i);
+                    flights.remove(i);
+                    pax.remove(i);
+                } else if (op == 8 && !cars.isEmpty()) {
+                    int i = rnd.nextInt(cars.size());
+                    s.removeCar(i);
+                    cars.remove(i);
+                } else {
+                    rate = rate();
+                    s.setGstRate(rate);
+                }
+                compareTotals(s, flights, pax, cars, rate, n, step);
+            }
+        }
+    }
+
+    /** The totals as BookingSession computed them before running aggregates and Money. */
+    private void compareTotals(BookingSession s, List<BigDecimal> flights, List<Integer> pax,
+                               List<BigDecimal> cars, BigDecimal rate, int session, int step) {
+        String     at     = "session " + session + " step " + step + ": ";
+        BigDecimal flight = flights.stream().reduce(BigDecimal.ZERO, BigDecimal::add);
+        BigDecimal car    = cars.stream().reduce(BigDecimal.ZERO, BigDecimal::add);
+        BigDecimal sub    = flight.add(car);
+        BigDecimal gst    = gst(sub, rate);
+
+        same(at + "flight total", flight, s.getFlightTotal().toBigDecimal());
+        same(at + "car total", car, s.getCarTotal().toBigDecimal());
+        same(at + "subtotal", sub, s.getSubtotal().toBigDecimal());
+        same(at + "GST", gst, s.getGstAmount().toBigDecimal());
+        same(at + "total", sub.add(gst), s.getTotalAmount().toBigDecimal());
+        same(at + "total text", sub.add(gst).toPlainString(), s.getTotalAmount().toPlainString());
+        same(at + "passengers", pax.stream().mapToInt(Integer::intValue).sum(), s.getTotalPassengers());
+    }
+
+    // -------------------------------------------------------------------------
+    // Generators
+    // -------------------------------------------------------------------------
+
+    private static BigDecimal gst(BigDecimal amount, BigDecimal rate) {
+        return amount.multiply(rate).divide(HUNDRED, 2, RoundingMode.HALF_UP);
+    }
+
+    /** Any amount: positive, zero or negative, scale 0-6, up to about 10^11 rupees. */
+    private BigDecimal amount() {
+        int  scale    = rnd.nextInt(7);
+        long bound    = 100_000_000_000L * (long) Math.pow(10, scale);
+        long unscaled = rnd.nextInt(8) == 0 ? rnd.nextInt(1000) - 500 : rnd.nextLong() % bound;
+        return BigDecimal.valueOf(unscaled, scale);
+    }
+
+    /** A valid fare: positive, mostly whole rupees or paise, sometimes finer. */
+    private BigDecimal fare() {
+        int  scale    = new int[]{0, 0, 1, 2, 2, 2, 3, 4}[rnd.nextInt(8)];
+        long unscaled = 1 + (long) (rnd.nextDouble() * 5_000_000);
+        return BigDecimal.valueOf(unscaled, scale);
+    }
+
+    /** A GST rate from 0 to 100%, at scale -1 to 3, e.g. 18, 12.5, 5.125 or 2E+1. */
+    private BigDecimal rate() {
+        int scale = rnd.nextInt(5) - 1;
+        if (scale < 0) return BigDecimal.valueOf(rnd.nextInt(11), -1);
+        long max = 100 * (long) Math.pow(10, scale);
+        return BigDecimal.valueOf((long) (rnd.nextDouble() * (max + 1)), scale);
+    }
+
+    private void same(String what, Object expected, Object actual) {
+        checks++;
+        if (!expected.equals(actual)) throw new AssertionError(what + ": expected " + expected + ", got " + actual);
+    }
+}
@@ -0,0 +1,271 @@
+package bill;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Randomised check of BookingSession's running totals, with the consistency
+ * check switched on.
+ *
+ * Usage:
+ *   java -cp classes:test-classes bill.SessionCheck [sessions] [seed]
+ *
+ * Each session gets a random sequence of add, update, replace, remove (by index
+ * and by ID), move, reset and setGstRate calls, and of edits that must be
+ * rejected without changing anything: fares with too many decimal places, and
+ * fares that would overflow the totals. After every call all totals
+ * getters are read, so BookingSession recomputes them from the lists with the
+ * original BigDecimal formulas and throws if the running aggregates drifted. The
+ * line order and IDs are also compared with a plain list kept alongside.
+ *
+ * Every few steps the session is written in the legacy serialized format (plain
+ * ObjectOutputStream, as sessions were saved before SessionFormat) and in the
+ * binary format, read back with loadFrom, and checked again. Fares include
+ * sub-paisa amounts such as 0.005, which legacy files may hold.
+ *
+ * Prints the first failure and exits with 1, or prints a summary and exits 0.
+ */
+public final class SessionCheck {
+
+    private final Random rnd;
+    private final File   dir;
+    private long checks, reloads;
+
+    private SessionCheck(long seed, File dir) {
+        this.rnd = new Random(seed);
+        this.dir = dir;
+    }
+
+    public static void main(String[] args) throws IOException {
+        int  sessions = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+        long seed     = args.length > 1 ? Long.parseLong(args[1])   : 20_141_012L;
+        BookingSession.setConsistencyChecks(true);
+
+        File dir = java.nio.file.Files.createTempDirectory("session-check").toFile();
+        SessionCheck check = new SessionCheck(seed, dir);
+        try {
+            for (int n = 0; n < sessions; n++) check.run(n);
+        } catch (RuntimeException | AssertionError e) {
+            System.err.println("FAILED (seed " + seed + "): " + e);
+            e.printStackTrace();
+            System.exit(1);
+        } finally {
+            File[] left = dir.listFiles();
+            if (left != null) for (File f : left) f.delete();
+            dir.delete();
+        }
+        System.out.println("SessionCheck passed: " + check.checks + " checks, "
+            + check.reloads + " reloads, seed " + seed);
+    }
+
+    /** The line IDs and fares a session should hold, in order. */
+    private static final class Model {
+        final List<Long>       flightIds   = new ArrayList<>();
+        final List<BigDecimal> flightFares = new ArrayList<>();
+        final List<Integer>    pax         = new ArrayList<>();
+        final List<Long>       carIds      = new ArrayList<>();
+        final List<BigDecimal> carFares    = new ArrayList<>();
+
+        void clear() {
+            flightIds.clear(); flightFares.clear(); pax.clear();
+            carIds.clear(); carFares.clear();
+        }
+    }
+
+    private void run(int n) throws IOException {
+        BookingSession s = new BookingSession();
+        Model          m = new Model();
+        s.setCustomerDetails("Customer " + n, "98000" + n, "Pune", "INV-" + n, new java.util.Date());
+
+        for (int step = 0; step < 200; step++) {
+            String at = "session " + n + " step " + step;
+            switch (rnd.nextInt(14)) {
+                case 0: case 1: {
+                    BigDecimal fare = fare();
+                    int        p    = 1 + rnd.nextInt(6);
+                    s.addFlight("PNR" + step, "DEL", "BOM", fare, p);
+                    m.flightIds.add(s.getFlights().get(s.getTotalFlights() - 1).id);
+                    m.flightFares.add(fare);
+                    m.pax.add(p);
+                    break;
+                }
+                case 2: case 3: {
+                    BigDecimal fare = fare();
+                    s.addCar("MH12" + step, "PNQ", "GOI", fare);
+                    m.carIds.add(s.getCars().get(s.getTotalCars() - 1).id);
+                    m.carFares.add(fare);
+                    break;
+                }
+                case 4: {
+                    if (m.flightIds.isEmpty()) break;
+                    int        i    = rnd.nextInt(m.flightIds.size());
+                    BigDecimal fare = fare();
+                    int        p    = 1 + rnd.nextInt(6);
+                    if (rnd.nextBoolean()) s.updateFlight(i, "UPD" + step, "DEL", "MAA", fare, p);
+                    else                   s.replaceFlight(m.flightIds.get(i), "UPD" + step, "DEL", "MAA", fare, p);
+                    m.flightFares.set(i, fare);
+                    m.pax.set(i, p);
+                    break;
+                }
+                case 5: {
+                    if (m.carIds.isEmpty()) break;
+                    int        i    = rnd.nextInt(m.carIds.size());
+                    BigDecimal fare = fare();
+                    if (rnd.nextBoolean()) s.updateCar(i, "UPD" + step, "PNQ", "BOM", fare);
+                    else                   s.replaceCar(m.carIds.get(i), "UPD" + step, "PNQ", "BOM", fare);
+                    m.carFares.set(i, fare);
+                    break;
+                }
+                case 6: {
+                    if (m.flightIds.isEmpty()) break;
+                    int i = rnd.nextInt(m.flightIds.size());
+                    if (rnd.nextBoolean()) s.removeFlight(i);
+                    else                   check(at + " removeFlightById", s.removeFlightById(m.flightIds.get(i)));
+                    m.flightIds.remove(i);
+                    m.flightFares.remove(i);
+                    m.pax.remove(i);
+                    break;
+                }
+                case 7: {
+                    if (m.carIds.isEmpty()) break;
+                    int i = rnd.nextInt(m.carIds.size());
+                    if (rnd.nextBoolean()) s.removeCar(i);
+                    else                   check(at + " removeCarById", s.removeCarById(m.carIds.get(i)));
+                    m.carIds.remove(i);
+                    m.carFares.remove(i);
+                    break;
+                }
+                case 8: {
+                    if (m.flightIds.isEmpty()) break;
+                    int from = rnd.nextInt(m.flightIds.size()), to = rnd.nextInt(m.flightIds.size());
+                    s.moveFlight(m.flightIds.get(from), to);
+                    m.flightIds.add(to, m.flightIds.remove(from));
+                    m.flightFares.add(to, m.flightFares.remove(from));
+                    m.pax.add(to, m.pax.remove(from));
+                    break;
+                }
+                case 9: {
+                    if (m.carIds.isEmpty()) break;
+                    int from = rnd.nextInt(m.carIds.size()), to = rnd.nextInt(m.carIds.size());
+                    s.moveCar(m.carIds.get(from), to);
+                    m.carIds.add(to, m.carIds.remove(from));
+                    m.carFares.add(to, m.carFares.remove(from));
+                    break;
+                }
+                case 10:
+                    s.setGstRate(rate());
+                    break;
+                case 11:
+                    if (rnd.nextInt(10) == 0) {
+                        s.reset();
+                        m.clear();
+                    }
+                    break;
+                case 12: {
+                    // Must throw IllegalArgumentException and change nothing
+                    long       before = s.getVersion();
+                    BigDecimal bad    = rnd.nextBoolean() ? new BigDecimal("1.00001") : new BigDecimal("1E+17");
+                    int        op     = rnd.nextInt(3);
+                    try {
+                        if (op == 0)                               s.addCar("BAD" + step, "PNQ", "GOI", bad);
+                        else if (op == 1 || m.flightIds.isEmpty()) s.addFlight("BAD" + step, "DEL", "BOM", bad, 1);
+                        else s.replaceFlight(m.flightIds.get(0), "BAD" + step, "DEL", "BOM", bad, 1);
+                        check(at + " rejected " + bad, false);
+                    } catch (IllegalArgumentException expected) {
+                        same(at + " version after rejected edit", before, s.getVersion());
+                    }
+                    break;
+                }
+                default: {
+                    BookingSession loaded = reload(s, rnd.nextBoolean());
+                    compare(at + " reloaded", loaded, m, false);
+                    break;
+                }
+            }
+            compare(at, s, m, true);
+        }
+    }
+
+    /** Reads every totals getter (each one runs the consistency check) and compares lines with the model. */
+    private void compare(String at, BookingSession s, Model m, boolean sameIds) {
+        s.getFlightTotal();
+        s.getCarTotal();
+        s.getSubtotal();
+        s.getGstAmount();
+        s.getTotalAmount();
+
+        same(at + " flight count", m.flightFares.size(), s.getTotalFlights());
+        same(at + " car count", m.carFares.size(), s.getTotalCars());
+        same(at + " passengers", m.pax.stream().mapToInt(Integer::intValue).sum(), s.getTotalPassengers());
+        for (int i = 0; i < m.flightFares.size(); i++) {
+            BookingSession.FlightBookingData f = s.getFlights().get(i);
+            same(at + " flight " + i + " fare", m.flightFares.get(i), f.fare.toBigDecimal());
+            if (!sameIds) continue;
+            same(at + " flight " + i + " id", m.flightIds.get(i), f.id);
+            same(at + " indexOfFlight", i, s.indexOfFlight(f.id));
+        }
+        for (int i = 0; i < m.carFares.size(); i++) {
+            BookingSession.CarBookingData c = s.getCars().get(i);
+            same(at + " car " + i + " fare", m.carFares.get(i), c.fare.toBigDecimal());
+            if (!sameIds) continue;
+            same(at + " car " + i + " id", m.carIds.get(i), c.id);
+            same(at + " indexOfCar", i, s.indexOfCar(c.id));
+        }
+    }
+
+    /** Saves s in the legacy serialized format or the binary one, and loads it back. */
+    private BookingSession reload(BookingSession s, boolean legacy) throws IOException {
+        File file = new File(dir, "session-" + reloads++ + (legacy ? ".ser" : ".bin"));
+        try {
+            if (legacy) {
+                try (ObjectOutputStream out = new ObjectOutputStream(new FileOutputStream(file))) {
+                    out.writeObject(s);
+                }
+            } else {
+                s.saveTo(file);
+            }
+            BookingSession loaded = BookingSession.loadFrom(file);
+            // the binary format stores 2E+1 as 20, which prints the same
+            same("reloaded GST rate", s.getGstRatePercent().toPlainString(), loaded.getGstRatePercent().toPlainString());
+            same("reloaded total", s.getTotalAmount(), loaded.getTotalAmount());
+            return loaded;
+        } catch (ClassNotFoundException e) {
+            throw new IOException(e);
+        } finally {
+            file.delete();
+        }
+    }
+
+    // -------------------------------------------------------------------------
+    // Generators
+    // -------------------------------------------------------------------------
+
+    /** A valid fare, usually whole rupees or paise, sometimes finer than a paisa. */
+    private BigDecimal fare() {
+        if (rnd.nextInt(20) == 0) return new BigDecimal("0.005");
+        int  scale    = new int[]{0, 0, 1, 2, 2, 2, 2, 3, 4}[rnd.nextInt(9)];
+        long unscaled = 1 + (long) (rnd.nextDouble() * 10_000_000);
+        return BigDecimal.valueOf(unscaled, scale);
+    }
+
+    private BigDecimal rate() {
+        return new BigDecimal[]{ new BigDecimal("18"), new BigDecimal("5"), new BigDecimal("12.5"),
+                                 new BigDecimal("0"), new BigDecimal("28.00"), new BigDecimal("2E+1") }
+            [rnd.nextInt(6)];
+    }
+
+    private void check(String what, boolean ok) {
+        checks++;
+        if (!ok) throw new AssertionError(what);
+    }
+
+    private void same(String what, Object expected, Object actual) {
+        check(what + ": expected " + expected + ", got " + actual, expected.equals(actual));
+    }
+}